@@ -0,0 +1,137 @@
+package org.ligoj.app.plugin.travis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Wall time of the status refresh of many jobs against a local Travis API answering with a remote-like latency: the
+ * serial path versus the virtual thread fan-out capped per node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class TravisFanOutBenchmark {
+
+	/**
+	 * Amount of jobs to refresh.
+	 */
+	@Param({ "100", "1000" })
+	private int size;
+
+	/**
+	 * Maximal amount of concurrent calls of the fan-out.
+	 */
+	@Param({ "8", "32" })
+	private int concurrency;
+
+	/**
+	 * Latency in milliseconds of the local Travis API.
+	 */
+	@Param({ "20" })
+	private int latency;
+
+	private HttpServer server;
+
+	private TravisCurlProcessor processor;
+
+	private TravisJobParser parser;
+
+	private TravisFanOut fanOut;
+
+	private String url;
+
+	private String node;
+
+	private List<String> slugs;
+
+	/**
+	 * Start the local Travis API and wire the fan-out.
+	 *
+	 * @throws IOException When the server cannot be started.
+	 */
+	@Setup
+	public void setup() throws IOException {
+		server = TravisFixtures.startServer(TravisFixtures.repos(1), TravisFixtures.repo(), latency);
+		final Map<String, String> parameters = TravisFixtures.parameters(server);
+		url = parameters.get(TravisPluginResource.PARAMETER_URL);
+		node = TravisClientRegistry.toKey(parameters);
+		processor = new TravisCurlProcessor(parameters);
+		parser = TravisFixtures.newParser();
+		slugs = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			slugs.add(TravisFixtures.SLUG + "-" + i);
+		}
+
+		final var configuration = Mockito.mock(ConfigurationResource.class);
+		Mockito.when(configuration.get(ArgumentMatchers.anyString(), ArgumentMatchers.anyInt()))
+				.thenAnswer(i -> i.getArgument(1));
+		Mockito.when(configuration.get(TravisFanOut.CONF_CONCURRENCY, 8)).thenReturn(concurrency);
+		fanOut = new TravisFanOut();
+		ReflectionTestUtils.setField(fanOut, "configuration", configuration);
+	}
+
+	/**
+	 * Stop the local Travis API.
+	 */
+	@TearDown
+	public void tearDown() {
+		processor.close();
+		server.stop(0);
+	}
+
+	private Job findById(final String slug) {
+		final var request = new TravisCurlRequest("GET", url + "/repos/" + slug, null);
+		request.setParser(parser::parseRepo);
+		processor.process(request);
+		return (Job) request.getResult();
+	}
+
+	/**
+	 * One job after the other, as a single caller thread does.
+	 *
+	 * @return The jobs.
+	 */
+	@Benchmark
+	public List<Job> serial() {
+		final List<Job> result = new ArrayList<>(size);
+		for (final var slug : slugs) {
+			result.add(findById(slug));
+		}
+		return result;
+	}
+
+	/**
+	 * All the jobs at once, each one in a virtual thread.
+	 *
+	 * @return The jobs.
+	 */
+	@Benchmark
+	public List<Job> fanOut() {
+		return fanOut.invokeAll(slugs, s -> node, this::findById);
+	}
+}
@@ -0,0 +1,159 @@
+package org.ligoj.app.plugin.travis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.HttpServer;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+/**
+ * Travis payloads and local Travis API stand-in shared by the benchmarks. The listings are built from the recorded
+ * repositories of the test resources, replicated with unique slugs up to the requested size.
+ */
+final class TravisFixtures {
+
+	/**
+	 * Recorded repository listing.
+	 */
+	private static final String RECORDED_REPOS = "mock-server/travis/travis-find-job.json";
+
+	/**
+	 * Recorded repository.
+	 */
+	private static final String RECORDED_REPO = "mock-server/travis/travis-ligoj-vm-google-config.json";
+
+	/**
+	 * Slug of the recorded repository.
+	 */
+	static final String SLUG = "ligoj/plugin-vm-google";
+
+	static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private TravisFixtures() {
+		// Utility class
+	}
+
+	/**
+	 * Return a parser wired to a plain object mapper.
+	 *
+	 * @return The parser.
+	 */
+	static TravisJobParser newParser() {
+		final var parser = new TravisJobParser();
+		ReflectionTestUtils.setField(parser, "objectMapper", MAPPER);
+		return parser;
+	}
+
+	/**
+	 * Return the recorded repository document.
+	 *
+	 * @return The <code>/repos/{slug}</code> payload.
+	 * @throws IOException When the fixture cannot be read.
+	 */
+	static byte[] repo() throws IOException {
+		return read(RECORDED_REPO);
+	}
+
+	/**
+	 * Return a repository listing of the given size.
+	 *
+	 * @param size The amount of repositories.
+	 * @return The <code>/repos</code> payload.
+	 * @throws IOException When the fixture cannot be read.
+	 */
+	static byte[] repos(final int size) throws IOException {
+		final JsonNode recorded = MAPPER.readTree(read(RECORDED_REPOS)).get("repos");
+		final List<JsonNode> repos = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			final var repo = (ObjectNode) recorded.get(i % recorded.size()).deepCopy();
+			repo.put("id", i);
+			repo.put("slug", repo.get("slug").asString() + "-" + i);
+			repos.add(repo);
+		}
+		return MAPPER.writeValueAsBytes(Map.of("repos", repos));
+	}
+
+	private static byte[] read(final String resource) throws IOException {
+		try (InputStream input = TravisFixtures.class.getClassLoader().getResourceAsStream(resource)) {
+			return IOUtils.toByteArray(input);
+		}
+	}
+
+	/**
+	 * Start a local Travis API serving the given payloads on an ephemeral port: the listing for <code>/repos</code>
+	 * and the repository for any <code>/repos/{owner}/{name}</code>.
+	 *
+	 * @param repos The listing payload.
+	 * @param repo  The repository payload.
+	 * @return The started server.
+	 * @throws IOException When the server cannot be started.
+	 */
+	static HttpServer startServer(final byte[] repos, final byte[] repo) throws IOException {
+		return startServer(repos, repo, 0);
+	}
+
+	/**
+	 * Start a local Travis API answering concurrently after the given latency, as a remote Travis would.
+	 *
+	 * @param repos   The listing payload.
+	 * @param repo    The repository payload.
+	 * @param latency The delay in milliseconds before each response.
+	 * @return The started server.
+	 * @throws IOException When the server cannot be started.
+	 * @see #startServer(byte[], byte[])
+	 */
+	static HttpServer startServer(final byte[] repos, final byte[] repo, final int latency) throws IOException {
+		final var server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.createContext("/repos", exchange -> {
+			if (latency > 0) {
+				try {
+					Thread.sleep(latency);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			final var body = exchange.getRequestURI().getPath().length() > "/repos/".length() ? repo : repos;
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (var output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	/**
+	 * Return the node parameters targeting the given local server.
+	 *
+	 * @param server The local Travis API.
+	 * @return The node parameters.
+	 */
+	static Map<String, String> parameters(final HttpServer server) {
+		return Map.of(TravisPluginResource.PARAMETER_URL, "http://localhost:" + server.getAddress().getPort(),
+				TravisPluginResource.PARAMETER_TOKEN, "benchmark");
+	}
+
+	/**
+	 * Return the text of a payload.
+	 *
+	 * @param payload The payload.
+	 * @return The UTF-8 text.
+	 */
+	static String toString(final byte[] payload) {
+		return new String(payload, StandardCharsets.UTF_8);
+	}
+}
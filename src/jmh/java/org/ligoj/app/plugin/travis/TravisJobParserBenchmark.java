@@ -0,0 +1,97 @@
+package org.ligoj.app.plugin.travis;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tools.jackson.databind.JsonNode;
+
+/**
+ * Parse cost of the Travis payloads, without network. The tree based methods are the reference of the former
+ * <code>readTree</code> implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TravisJobParserBenchmark {
+
+	/**
+	 * Amount of repositories of the listing.
+	 */
+	@Param({ "10", "1000", "50000" })
+	private int size;
+
+	private TravisJobParser parser;
+
+	private byte[] repos;
+
+	private byte[] repo;
+
+	/**
+	 * Build the payloads.
+	 *
+	 * @throws IOException When the fixtures cannot be read.
+	 */
+	@Setup
+	public void setup() throws IOException {
+		parser = TravisFixtures.newParser();
+		repos = TravisFixtures.repos(size);
+		repo = TravisFixtures.repo();
+	}
+
+	/**
+	 * Streaming parse of a listing.
+	 *
+	 * @return The jobs.
+	 */
+	@Benchmark
+	public List<Job> parseRepos() {
+		return parser.parseRepos(new ByteArrayInputStream(repos));
+	}
+
+	/**
+	 * Tree parse of a listing.
+	 *
+	 * @return The tree.
+	 */
+	@Benchmark
+	public JsonNode readTreeRepos() {
+		return TravisFixtures.MAPPER.readTree(TravisFixtures.toString(repos));
+	}
+
+	/**
+	 * Streaming parse of a repository.
+	 *
+	 * @return The job.
+	 */
+	@Benchmark
+	public Job parseRepo() {
+		return parser.parseRepo(new ByteArrayInputStream(repo));
+	}
+
+	/**
+	 * Tree parse of a repository.
+	 *
+	 * @return The tree.
+	 */
+	@Benchmark
+	public JsonNode readTreeRepo() {
+		return TravisFixtures.MAPPER.readTree(TravisFixtures.toString(repo));
+	}
+}
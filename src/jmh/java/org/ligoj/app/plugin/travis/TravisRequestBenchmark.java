@@ -0,0 +1,99 @@
+package org.ligoj.app.plugin.travis;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Cost of a Travis request, from the request building to the parsed jobs, against a local Travis API. The processor
+ * is shared between the invocations, as in the client registry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TravisRequestBenchmark {
+
+	/**
+	 * Amount of repositories of the listing.
+	 */
+	@Param({ "10", "1000", "50000" })
+	private int size;
+
+	private HttpServer server;
+
+	private TravisCurlProcessor processor;
+
+	private TravisJobParser parser;
+
+	private String url;
+
+	/**
+	 * Start the local Travis API.
+	 *
+	 * @throws IOException When the server cannot be started.
+	 */
+	@Setup
+	public void setup() throws IOException {
+		server = TravisFixtures.startServer(TravisFixtures.repos(size), TravisFixtures.repo());
+		final var parameters = TravisFixtures.parameters(server);
+		url = parameters.get(TravisPluginResource.PARAMETER_URL);
+		processor = new TravisCurlProcessor(parameters);
+		parser = TravisFixtures.newParser();
+	}
+
+	/**
+	 * Stop the local Travis API.
+	 */
+	@TearDown
+	public void tearDown() {
+		processor.close();
+		server.stop(0);
+	}
+
+	private <T> T get(final String resource, final TravisResponseParser<T> responseParser) {
+		final var request = new TravisCurlRequest("GET", url + resource, null);
+		request.setParser(responseParser);
+		processor.process(request);
+		@SuppressWarnings("unchecked")
+		final var result = (T) request.getResult();
+		return result;
+	}
+
+	/**
+	 * Search request: <code>/repos?search=</code>.
+	 *
+	 * @return The jobs.
+	 */
+	@Benchmark
+	public List<Job> findAll() {
+		return get("/repos?search=ligoj&limit=" + size, parser::parseRepos);
+	}
+
+	/**
+	 * Repository request: <code>/repos/{slug}</code>.
+	 *
+	 * @return The job.
+	 */
+	@Benchmark
+	public Job findById() {
+		return get("/repos/" + TravisFixtures.SLUG, parser::parseRepo);
+	}
+}
@@ -0,0 +1,54 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Travis build of a repository.
+ */
+@Getter
+@Setter
+public class Build {
+
+	private String id;
+	private String number;
+
+	/**
+	 * Travis state: <code>created</code>, <code>started</code>, <code>passed</code>,...
+	 */
+	private String state;
+
+	/**
+	 * Color of the state.
+	 */
+	private String status;
+	private boolean building;
+	private String startedAt;
+	private String finishedAt;
+
+	/**
+	 * Duration in seconds. <code>null</code> while running.
+	 */
+	private Long duration;
+	private String eventType;
+	private String commitId;
+
+	/**
+	 * Commit time, only available in the build listings.
+	 */
+	private String committedAt;
+	private List<String> jobIds = new ArrayList<>();
+
+	/**
+	 * The jobs of this build. Only available in the build details.
+	 */
+	private List<BuildJob> jobs;
+
+	/**
+	 * Owner repository slug, only available with the API v3.
+	 */
+	private String repositorySlug;
+}
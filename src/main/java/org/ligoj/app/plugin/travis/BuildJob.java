@@ -0,0 +1,33 @@
+package org.ligoj.app.plugin.travis;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Travis job of a build, owning a log.
+ */
+@Getter
+@Setter
+public class BuildJob {
+
+	private String id;
+	private String number;
+
+	/**
+	 * Travis state: <code>created</code>, <code>started</code>, <code>passed</code>,...
+	 */
+	private String state;
+
+	/**
+	 * Color of the state.
+	 */
+	private String status;
+	private boolean building;
+	private String startedAt;
+	private String finishedAt;
+
+	/**
+	 * Owner repository slug.
+	 */
+	private String repositorySlug;
+}
@@ -20,4 +20,14 @@ public class Job extends DescribedBean<String> {
 	private String status;
 	private boolean building;
 	private String lastBuildId;
+
+	/**
+	 * End time of the last build. May be <code>null</code>.
+	 */
+	private String lastBuildFinishedAt;
+
+	/**
+	 * When <code>true</code>, this is the last known status served while the Travis node is unhealthy.
+	 */
+	private boolean stale;
 }
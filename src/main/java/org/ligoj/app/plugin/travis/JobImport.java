@@ -0,0 +1,33 @@
+package org.ligoj.app.plugin.travis;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A row of a bulk subscription import: a project linked to a Travis job, and the outcome of this row.
+ */
+@Getter
+@Setter
+public class JobImport {
+
+	/**
+	 * Project identifier.
+	 */
+	private Integer project;
+
+	/**
+	 * Travis job's slug.
+	 */
+	private String job;
+
+	/**
+	 * Created subscription identifier, <code>null</code> when this row has failed.
+	 */
+	private Integer subscription;
+
+	/**
+	 * Error key of this row: <code>travis-job</code>, <code>project</code>, <code>travis-unavailable</code>,...
+	 * <code>null</code> when the subscription has been created.
+	 */
+	private String error;
+}
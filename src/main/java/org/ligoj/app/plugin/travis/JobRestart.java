@@ -0,0 +1,33 @@
+package org.ligoj.app.plugin.travis;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The outcome of the restart of the job of a subscription within a bulk restart.
+ */
+@Getter
+@Setter
+public class JobRestart {
+
+	/**
+	 * Subscription identifier.
+	 */
+	private int subscription;
+
+	/**
+	 * Travis job's slug. <code>null</code> when the subscription is not available.
+	 */
+	private String job;
+
+	/**
+	 * Restarted build identifier, <code>null</code> when the restart has failed.
+	 */
+	private String build;
+
+	/**
+	 * Error key: <code>subscription</code>, <code>travis-job</code>, <code>travis-restart</code>,
+	 * <code>travis-unavailable</code>,... <code>null</code> when the build has been restarted.
+	 */
+	private String error;
+}
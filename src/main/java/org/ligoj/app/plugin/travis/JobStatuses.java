@@ -0,0 +1,80 @@
+package org.ligoj.app.plugin.travis;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Compact status of the jobs of several subscriptions, in parallel columns. Each slug is sent once, and each status
+ * is a byte code: the color in the two lowest bits, then the {@link #BUILDING} and {@link #STALE} flags. The byte
+ * array is serialized as a Base64 string.
+ */
+@Getter
+@Setter
+public class JobStatuses {
+
+	/**
+	 * Color code of a passed build.
+	 */
+	public static final byte BLUE = 0;
+
+	/**
+	 * Color code of a started build.
+	 */
+	public static final byte YELLOW = 1;
+
+	/**
+	 * Color code of a failed build.
+	 */
+	public static final byte RED = 2;
+
+	/**
+	 * Color code of an unknown status.
+	 */
+	public static final byte DISABLED = 3;
+
+	/**
+	 * Flag of a running build.
+	 */
+	public static final byte BUILDING = 4;
+
+	/**
+	 * Flag of a last known status served while Travis is unavailable.
+	 */
+	public static final byte STALE = 8;
+
+	/**
+	 * Subscription identifiers.
+	 */
+	private int[] subscriptions;
+
+	/**
+	 * Distinct Travis job's slugs.
+	 */
+	private String[] jobs;
+
+	/**
+	 * Index in {@link #jobs} of the slug of each subscription.
+	 */
+	private int[] job;
+
+	/**
+	 * Status code of each subscription.
+	 */
+	private byte[] status;
+
+	/**
+	 * Return the status code of a job.
+	 *
+	 * @param job The job.
+	 * @return The status code.
+	 */
+	public static byte toCode(final Job job) {
+		final byte color = switch (String.valueOf(job.getStatus())) {
+		case "blue" -> BLUE;
+		case "yellow" -> YELLOW;
+		case "red" -> RED;
+		default -> DISABLED;
+		};
+		return (byte) (color | (job.isBuilding() ? BUILDING : 0) | (job.isStale() ? STALE : 0));
+	}
+}
@@ -0,0 +1,191 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.ligoj.app.plugin.travis.TravisBuildRequest.BuildState;
+import org.ligoj.bootstrap.core.resource.BusinessException;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Queue of the asynchronous build restarts. Each Travis node has its own bounded queue and concurrency limit, and
+ * the restarts of the same job requested within a short window are merged.
+ */
+@Component
+@Slf4j
+public class TravisBuildQueue {
+
+	/**
+	 * Configuration key of the maximal amount of concurrent restarts per Travis node.
+	 */
+	public static final String CONF_CONCURRENCY = TravisPluginResource.KEY + ":build-concurrency";
+
+	/**
+	 * Configuration key of the maximal amount of waiting restarts per Travis node.
+	 */
+	public static final String CONF_QUEUE = TravisPluginResource.KEY + ":build-queue";
+
+	/**
+	 * Configuration key of the window, in seconds, merging the restarts of the same job.
+	 */
+	public static final String CONF_MERGE = TravisPluginResource.KEY + ":build-merge";
+
+	/**
+	 * Default maximal amount of concurrent restarts per Travis node.
+	 */
+	private static final int DEFAULT_CONCURRENCY = 2;
+
+	/**
+	 * Default maximal amount of waiting restarts per Travis node.
+	 */
+	private static final int DEFAULT_QUEUE = 100;
+
+	/**
+	 * Default merge window, in seconds.
+	 */
+	private static final int DEFAULT_MERGE = 10;
+
+	/**
+	 * Retention of the completed requests, in milliseconds.
+	 */
+	private static final long RETENTION = TimeUnit.MINUTES.toMillis(10);
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	/**
+	 * Executors by node API URL and token hash.
+	 */
+	private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+	/**
+	 * Requests by identifier.
+	 */
+	private final Map<String, TravisBuildRequest> requests = new ConcurrentHashMap<>();
+
+	/**
+	 * Last request by node API URL, token hash and job name.
+	 */
+	private final Map<String, TravisBuildRequest> jobs = new ConcurrentHashMap<>();
+
+	/**
+	 * Stop the running restarts.
+	 */
+	@PreDestroy
+	public void stop() {
+		executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+	}
+
+	/**
+	 * Queue a restart. A restart of the same job requested within the merge window is returned instead.
+	 *
+	 * @param node         The node API URL and token hash.
+	 * @param subscription The subscription identifier.
+	 * @param job          The job name.
+	 * @param restart      The restart action returning <code>true</code> when accepted by Travis.
+	 * @param listener     The listener notified on completion.
+	 * @return The queued or merged request.
+	 */
+	public TravisBuildRequest submit(final String node, final int subscription, final String job,
+			final Callable<Boolean> restart, final Consumer<TravisBuildRequest> listener) {
+		purge();
+		final long window = TimeUnit.SECONDS.toMillis(configuration.get(CONF_MERGE, DEFAULT_MERGE));
+		final var created = new TravisBuildRequest();
+		created.setId(UUID.randomUUID().toString());
+		created.setSubscription(subscription);
+		created.setJob(job);
+		final var request = jobs.compute(node + "|" + job, (k, previous) -> {
+			if (previous != null && previous.getCreated() >= System.currentTimeMillis() - window) {
+				return previous;
+			}
+			// Registered before being visible to the merged restarts
+			requests.put(created.getId(), created);
+			return created;
+		});
+		if (request != created) {
+			// Merged with a recent restart of this job
+			return request;
+		}
+		try {
+			getExecutor(node).execute(() -> run(created, restart, listener));
+		} catch (final RejectedExecutionException e) {
+			requests.remove(created.getId());
+			jobs.remove(node + "|" + job, created);
+			throw new BusinessException("travis-build-queue-full", e);
+		}
+		return created;
+	}
+
+	/**
+	 * Run a restart and complete its request.
+	 */
+	private void run(final TravisBuildRequest request, final Callable<Boolean> restart,
+			final Consumer<TravisBuildRequest> listener) {
+		request.setState(BuildState.RUNNING);
+		try {
+			request.setState(Boolean.TRUE.equals(restart.call()) ? BuildState.SUCCEEDED : BuildState.FAILED);
+		} catch (final Exception e) {
+			log.info("Restart of the Travis job {} failed: {}", request.getJob(), e.getMessage());
+			request.setMessage(e.getMessage());
+			request.setState(BuildState.FAILED);
+		}
+		request.setFinished(System.currentTimeMillis());
+		listener.accept(request);
+	}
+
+	/**
+	 * Return the executor of a node.
+	 */
+	private ThreadPoolExecutor getExecutor(final String node) {
+		return executors.computeIfAbsent(node, k -> {
+			final int concurrency = configuration.get(CONF_CONCURRENCY, DEFAULT_CONCURRENCY);
+			final var executor = new ThreadPoolExecutor(concurrency, concurrency, 1, TimeUnit.MINUTES,
+					new ArrayBlockingQueue<>(configuration.get(CONF_QUEUE, DEFAULT_QUEUE)), r -> {
+						final var thread = new Thread(r, "travis-build");
+						thread.setDaemon(true);
+						return thread;
+					});
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		});
+	}
+
+	/**
+	 * Drop the requests completed since the retention delay.
+	 */
+	private void purge() {
+		final long limit = System.currentTimeMillis() - RETENTION;
+		requests.values().removeIf(r -> r.isDone() && r.getFinished() < limit);
+		jobs.values().removeIf(r -> r.isDone() && r.getFinished() < limit);
+	}
+
+	/**
+	 * Return a request.
+	 *
+	 * @param id The request identifier.
+	 * @return The request. <code>null</code> when unknown or expired.
+	 */
+	public TravisBuildRequest get(final String id) {
+		return requests.get(id);
+	}
+
+	/**
+	 * Forget all the requests.
+	 */
+	public void clear() {
+		requests.clear();
+		jobs.clear();
+	}
+}
@@ -0,0 +1,78 @@
+package org.ligoj.app.plugin.travis;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * An asynchronous build restart request and its outcome.
+ */
+@Getter
+@Setter
+public class TravisBuildRequest {
+
+	/**
+	 * Request state.
+	 */
+	public enum BuildState {
+		/**
+		 * Waiting for a slot of its Travis node.
+		 */
+		QUEUED,
+
+		/**
+		 * Restart in progress.
+		 */
+		RUNNING,
+
+		/**
+		 * Restart accepted by Travis.
+		 */
+		SUCCEEDED,
+
+		/**
+		 * Restart refused or failed.
+		 */
+		FAILED
+	}
+
+	/**
+	 * Request identifier.
+	 */
+	private String id;
+
+	/**
+	 * Subscription identifier.
+	 */
+	private int subscription;
+
+	/**
+	 * Travis job name.
+	 */
+	private String job;
+
+	private volatile BuildState state = BuildState.QUEUED;
+
+	/**
+	 * Failure message.
+	 */
+	private String message;
+
+	/**
+	 * Creation timestamp.
+	 */
+	private long created = System.currentTimeMillis();
+
+	/**
+	 * Completion timestamp. <code>0</code> while not completed.
+	 */
+	private long finished;
+
+	/**
+	 * Indicates this request is completed.
+	 *
+	 * @return <code>true</code> when completed.
+	 */
+	public boolean isDone() {
+		return state == BuildState.SUCCEEDED || state == BuildState.FAILED;
+	}
+}
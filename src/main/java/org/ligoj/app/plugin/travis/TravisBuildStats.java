@@ -0,0 +1,390 @@
+package org.ligoj.app.plugin.travis;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local time series of the finished builds of each job, keyed by node API URL, token hash and slug. The builds are
+ * stored in primitive arrays ordered by build identifier, and only the builds newer than the stored ones are fetched
+ * from Travis. The duration, pass rate and commit to start delay aggregates are computed on each ingest, so reading
+ * them costs nothing. The Travis builds have no queued time, so the time spent in the Travis queue is not known.
+ */
+@Component
+@Slf4j
+public class TravisBuildStats {
+
+	/**
+	 * Configuration key of the delay, in seconds, after which the builds of a job are ingested again.
+	 */
+	public static final String CONF_STATS_REFRESH = TravisPluginResource.KEY + ":stats-refresh";
+
+	/**
+	 * Default refresh delay, in seconds.
+	 */
+	private static final int DEFAULT_STATS_REFRESH = 600;
+
+	/**
+	 * Aggregated windows, in days. The last one is the retention.
+	 */
+	public static final int[] WINDOWS = { 7, 30, 90 };
+
+	/**
+	 * Maximal amount of pages fetched by an ingest.
+	 */
+	private static final int MAX_PAGES = 40;
+
+	private static final byte PASSED = 0;
+	private static final byte FAILED = 1;
+	private static final byte ERRORED = 2;
+	private static final byte CANCELED = 3;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+	private ExecutorService executor;
+
+	/**
+	 * The aggregates of a window.
+	 *
+	 * @param builds            The amount of finished builds.
+	 * @param passRate          The ratio of passed builds among the passed, failed and errored ones.
+	 *                          <code>null</code> without such build.
+	 * @param medianDuration    The median duration in seconds.
+	 * @param p95Duration       The 95th percentile of the duration in seconds.
+	 * @param medianCommitDelay The median delay in seconds between the commit and the build start, including the
+	 *                          time before the push.
+	 */
+	public record Window(int builds, Double passRate, Integer medianDuration, Integer p95Duration,
+			Integer medianCommitDelay) {
+	}
+
+	/**
+	 * The finished builds of a job, in parallel arrays ordered by build identifier.
+	 */
+	private static class Series {
+		private long[] ids = new long[16];
+		private long[] started = new long[16];
+		private int[] durations = new int[16];
+		private int[] delays = new int[16];
+		private byte[] states = new byte[16];
+		private int size;
+
+		/**
+		 * The builds up to this identifier are stored, or are not finished builds.
+		 */
+		private long after;
+		private volatile long refreshed;
+		private boolean loading;
+		private volatile Map<String, Window> aggregates;
+
+		private void ensureCapacity() {
+			if (size == ids.length) {
+				final int capacity = size * 2;
+				ids = Arrays.copyOf(ids, capacity);
+				started = Arrays.copyOf(started, capacity);
+				durations = Arrays.copyOf(durations, capacity);
+				delays = Arrays.copyOf(delays, capacity);
+				states = Arrays.copyOf(states, capacity);
+			}
+		}
+
+		/**
+		 * Insert a build at its position, an already stored build is ignored.
+		 */
+		private void add(final long id, final long start, final int duration, final int delay, final byte state) {
+			int position = Arrays.binarySearch(ids, 0, size, id);
+			if (position >= 0) {
+				return;
+			}
+			position = -position - 1;
+			ensureCapacity();
+			final int moved = size - position;
+			System.arraycopy(ids, position, ids, position + 1, moved);
+			System.arraycopy(started, position, started, position + 1, moved);
+			System.arraycopy(durations, position, durations, position + 1, moved);
+			System.arraycopy(delays, position, delays, position + 1, moved);
+			System.arraycopy(states, position, states, position + 1, moved);
+			ids[position] = id;
+			started[position] = start;
+			durations[position] = duration;
+			delays[position] = delay;
+			states[position] = state;
+			size++;
+		}
+
+		/**
+		 * Drop the builds started before the given time.
+		 */
+		private void prune(final long oldest) {
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (started[i] >= oldest) {
+					ids[kept] = ids[i];
+					started[kept] = started[i];
+					durations[kept] = durations[i];
+					delays[kept] = delays[i];
+					states[kept] = states[i];
+					kept++;
+				}
+			}
+			size = kept;
+		}
+	}
+
+	/**
+	 * Start the background ingest executor.
+	 */
+	@PostConstruct
+	public void start() {
+		executor = Executors.newSingleThreadExecutor(r -> {
+			final var thread = new Thread(r, "travis-build-stats");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Stop the background ingests.
+	 */
+	@PreDestroy
+	public void stop() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Return the store key of a job.
+	 *
+	 * @param parameters The node parameters.
+	 * @param slug       The job name.
+	 * @return The store key.
+	 */
+	public String toKey(final Map<String, String> parameters, final String slug) {
+		return TravisClientRegistry.toKey(parameters) + "|" + slug;
+	}
+
+	/**
+	 * Return the aggregates of a job computed by the last ingest.
+	 *
+	 * @param key The store key.
+	 * @return The aggregates by window in days. <code>null</code> when the job has never been ingested.
+	 */
+	public Map<String, Window> get(final String key) {
+		final var current = series.get(key);
+		return current == null ? null : current.aggregates;
+	}
+
+	/**
+	 * Indicates the builds of a job must be ingested again.
+	 *
+	 * @param key The store key.
+	 * @return <code>true</code> when the job has never been ingested or when its last ingest is older than the
+	 *         configured refresh delay.
+	 */
+	public boolean isStale(final String key) {
+		final var current = series.get(key);
+		return current == null || System.currentTimeMillis() - current.refreshed > TimeUnit.SECONDS
+				.toMillis(configuration.get(CONF_STATS_REFRESH, DEFAULT_STATS_REFRESH));
+	}
+
+	/**
+	 * Ingest the new builds of a job in the background when stale. Only one ingest per job runs at a time.
+	 *
+	 * @param key    The store key.
+	 * @param loader The build page loader, taking the build number to start after, <code>null</code> for the most
+	 *               recent page.
+	 */
+	public void refresh(final String key, final Function<String, List<Build>> loader) {
+		if (!isStale(key)) {
+			return;
+		}
+		final var current = series.computeIfAbsent(key, k -> new Series());
+		synchronized (current) {
+			if (current.loading) {
+				return;
+			}
+			current.loading = true;
+		}
+		executor.execute(() -> {
+			try {
+				ingest(key, loader);
+			} catch (final RuntimeException e) {
+				log.info("Unable to ingest the Travis builds of {}: {}", key.substring(key.lastIndexOf('|') + 1),
+						e.getMessage());
+			} finally {
+				synchronized (current) {
+					current.loading = false;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Ingest the builds of a job newer than the stored ones, then compute the aggregates. The pages are walked from
+	 * the most recent build, until a stored build or a build older than the retention is reached.
+	 *
+	 * @param key    The store key.
+	 * @param loader The build page loader, taking the build number to start after, <code>null</code> for the most
+	 *               recent page.
+	 * @return The new aggregates.
+	 */
+	public Map<String, Window> ingest(final String key, final Function<String, List<Build>> loader) {
+		final var current = series.computeIfAbsent(key, k -> new Series());
+		final long now = System.currentTimeMillis() / 1000;
+		final long oldest = now - TimeUnit.DAYS.toSeconds(WINDOWS[WINDOWS.length - 1]);
+		final long after;
+		synchronized (current) {
+			after = current.after;
+		}
+
+		// Walk the pages from the most recent build
+		final List<Build> builds = new ArrayList<>();
+		String afterNumber = null;
+		pages: for (int page = 0; page < MAX_PAGES; page++) {
+			final var pageBuilds = loader.apply(afterNumber);
+			if (pageBuilds == null || pageBuilds.isEmpty()) {
+				break;
+			}
+			for (final var build : pageBuilds) {
+				final long start = toEpoch(build.getStartedAt());
+				if (NumberUtils.toLong(build.getId()) <= after || start >= 0 && start < oldest) {
+					break pages;
+				}
+				builds.add(build);
+			}
+			afterNumber = pageBuilds.getLast().getNumber();
+		}
+
+		synchronized (current) {
+			long newAfter = current.after;
+			long running = Long.MAX_VALUE;
+			for (final var build : builds) {
+				final long id = NumberUtils.toLong(build.getId());
+				if (build.isBuilding()) {
+					running = Math.min(running, id);
+				} else {
+					add(current, id, build);
+				}
+				newAfter = Math.max(newAfter, id);
+			}
+			// A running build will be fetched again
+			current.after = Math.min(newAfter, running - 1);
+			current.prune(oldest);
+			current.refreshed = System.currentTimeMillis();
+			current.aggregates = aggregate(current, now);
+			return current.aggregates;
+		}
+	}
+
+	/**
+	 * Store a finished build having a start time and a duration.
+	 */
+	private void add(final Series current, final long id, final Build build) {
+		final long start = toEpoch(build.getStartedAt());
+		final byte state = toState(build.getState());
+		if (start < 0 || build.getDuration() == null || state < 0) {
+			return;
+		}
+		final long committed = toEpoch(build.getCommittedAt());
+		final int delay = committed < 0 || committed > start ? -1 : (int) (start - committed);
+		current.add(id, start, build.getDuration().intValue(), delay, state);
+	}
+
+	/**
+	 * Return the epoch seconds of an ISO instant, <code>-1</code> when not available.
+	 */
+	private static long toEpoch(final String instant) {
+		if (instant == null) {
+			return -1;
+		}
+		try {
+			return Instant.parse(instant).getEpochSecond();
+		} catch (final DateTimeParseException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Return the stored state code, <code>-1</code> for a not final state.
+	 */
+	private static byte toState(final String state) {
+		return switch (String.valueOf(state)) {
+		case "passed" -> PASSED;
+		case "failed" -> FAILED;
+		case "errored" -> ERRORED;
+		case "canceled" -> CANCELED;
+		default -> -1;
+		};
+	}
+
+	/**
+	 * Compute the aggregates of all the windows.
+	 */
+	private Map<String, Window> aggregate(final Series current, final long now) {
+		final Map<String, Window> result = new LinkedHashMap<>();
+		for (final int days : WINDOWS) {
+			final long from = now - TimeUnit.DAYS.toSeconds(days);
+			final int[] durations = new int[current.size];
+			final int[] delays = new int[current.size];
+			int count = 0;
+			int delayCount = 0;
+			int passed = 0;
+			int rated = 0;
+			for (int i = 0; i < current.size; i++) {
+				if (current.started[i] >= from) {
+					durations[count++] = current.durations[i];
+					if (current.delays[i] >= 0) {
+						delays[delayCount++] = current.delays[i];
+					}
+					if (current.states[i] != CANCELED) {
+						rated++;
+						passed += current.states[i] == PASSED ? 1 : 0;
+					}
+				}
+			}
+			Arrays.sort(durations, 0, count);
+			Arrays.sort(delays, 0, delayCount);
+			result.put(String.valueOf(days), new Window(count, rated == 0 ? null : (double) passed / rated,
+					percentile(durations, count, 50), percentile(durations, count, 95),
+					percentile(delays, delayCount, 50)));
+		}
+		return result;
+	}
+
+	/**
+	 * Return the nearest rank percentile of sorted values.
+	 */
+	private static Integer percentile(final int[] sorted, final int count, final int percentile) {
+		if (count == 0) {
+			return null;
+		}
+		return sorted[Math.max(0, (int) Math.ceil(percentile / 100d * count) - 1)];
+	}
+
+	/**
+	 * Drop all the stored builds.
+	 */
+	public void clear() {
+		series.clear();
+	}
+}
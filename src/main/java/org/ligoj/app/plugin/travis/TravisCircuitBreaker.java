@@ -0,0 +1,225 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breaker of each Travis API URL and token. After consecutive failures, the calls to this node fail fast
+ * during the open delay. Then a single probe call decides whether the node is closed again or stays open.
+ */
+@Component
+@Slf4j
+public class TravisCircuitBreaker {
+
+	/**
+	 * Configuration key of the timeout, in milliseconds, of a Travis request.
+	 */
+	public static final String CONF_TIMEOUT = TravisPluginResource.KEY + ":timeout";
+
+	/**
+	 * Configuration key of the timeout, in milliseconds, of a streamed Travis response, such as a job log.
+	 */
+	public static final String CONF_STREAM_TIMEOUT = TravisPluginResource.KEY + ":stream-timeout";
+
+	/**
+	 * Configuration key of the amount of consecutive failures opening the circuit.
+	 */
+	public static final String CONF_FAILURES = TravisPluginResource.KEY + ":breaker-failures";
+
+	/**
+	 * Configuration key of the delay, in seconds, before an open circuit is probed.
+	 */
+	public static final String CONF_OPEN = TravisPluginResource.KEY + ":breaker-open";
+
+	/**
+	 * Default request timeout, in milliseconds.
+	 */
+	private static final int DEFAULT_TIMEOUT = 5000;
+
+	/**
+	 * Default streamed response timeout, in milliseconds.
+	 */
+	private static final int DEFAULT_STREAM_TIMEOUT = 300000;
+
+	/**
+	 * Default amount of consecutive failures opening the circuit.
+	 */
+	private static final int DEFAULT_FAILURES = 5;
+
+	/**
+	 * Default open delay, in seconds.
+	 */
+	private static final int DEFAULT_OPEN = 30;
+
+	/**
+	 * Circuit state.
+	 */
+	public enum State {
+		/**
+		 * Calls are allowed.
+		 */
+		CLOSED,
+
+		/**
+		 * Calls fail fast.
+		 */
+		OPEN,
+
+		/**
+		 * A probe is running, the other calls fail fast.
+		 */
+		HALF_OPEN
+	}
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+	/**
+	 * The circuit of a node.
+	 */
+	private static class Circuit {
+		private State state = State.CLOSED;
+		private int failures;
+		private long opened;
+		private long rejected;
+	}
+
+	private Circuit getCircuit(final String key) {
+		return circuits.computeIfAbsent(key, k -> new Circuit());
+	}
+
+	/**
+	 * Return the timeout of a Travis request.
+	 *
+	 * @return The timeout in milliseconds.
+	 */
+	public int getTimeout() {
+		return configuration.get(CONF_TIMEOUT, DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Return the timeout of a streamed Travis response. The streamed requests are not recorded by the circuits.
+	 *
+	 * @return The timeout in milliseconds.
+	 */
+	public int getStreamTimeout() {
+		return configuration.get(CONF_STREAM_TIMEOUT, DEFAULT_STREAM_TIMEOUT);
+	}
+
+	/**
+	 * Indicates a call to the node is allowed. Once the open delay is elapsed, the first caller runs the probe and
+	 * the circuit is closed when the probe succeeds.
+	 *
+	 * @param key   The API URL and token hash.
+	 * @param probe The cheap call probing the node.
+	 * @return <code>true</code> when the call is allowed.
+	 */
+	public boolean allow(final String key, final BooleanSupplier probe) {
+		final var circuit = getCircuit(key);
+		synchronized (circuit) {
+			if (circuit.state == State.CLOSED) {
+				return true;
+			}
+			final long delay = TimeUnit.SECONDS.toMillis(configuration.get(CONF_OPEN, DEFAULT_OPEN));
+			if (circuit.state == State.HALF_OPEN || System.currentTimeMillis() - circuit.opened < delay) {
+				circuit.rejected++;
+				return false;
+			}
+			circuit.state = State.HALF_OPEN;
+		}
+		boolean success = false;
+		try {
+			success = probe.getAsBoolean();
+		} catch (final RuntimeException e) {
+			log.info("Travis probe of {} failed: {}", key.substring(0, key.lastIndexOf('|')), e.getMessage());
+		} finally {
+			synchronized (circuit) {
+				if (success) {
+					close(key, circuit);
+				} else {
+					open(key, circuit);
+				}
+			}
+		}
+		return success;
+	}
+
+	/**
+	 * Record the outcome of a completed call. A failure is a call without response, or with a server error.
+	 *
+	 * @param key        The API URL and token hash.
+	 * @param statusCode The response status, <code>0</code> without response.
+	 */
+	public void record(final String key, final int statusCode) {
+		final var circuit = getCircuit(key);
+		synchronized (circuit) {
+			if (statusCode > 0 && statusCode < 500) {
+				if (circuit.state == State.CLOSED) {
+					circuit.failures = 0;
+				}
+			} else if (circuit.state == State.CLOSED
+					&& ++circuit.failures >= configuration.get(CONF_FAILURES, DEFAULT_FAILURES)) {
+				open(key, circuit);
+			}
+		}
+	}
+
+	private void open(final String key, final Circuit circuit) {
+		if (circuit.state != State.OPEN) {
+			log.warn("Travis node {} is unhealthy, calls fail fast", key.substring(0, key.lastIndexOf('|')));
+		}
+		circuit.state = State.OPEN;
+		circuit.opened = System.currentTimeMillis();
+	}
+
+	private void close(final String key, final Circuit circuit) {
+		log.info("Travis node {} has recovered", key.substring(0, key.lastIndexOf('|')));
+		circuit.state = State.CLOSED;
+		circuit.failures = 0;
+	}
+
+	/**
+	 * Return the state of a node.
+	 *
+	 * @param key The API URL and token hash.
+	 * @return The circuit state.
+	 */
+	public State getState(final String key) {
+		final var circuit = circuits.get(key);
+		return circuit == null ? State.CLOSED : circuit.state;
+	}
+
+	/**
+	 * Return the circuit metrics.
+	 *
+	 * @return The metrics by API URL and token hash prefix: state, consecutive failures and rejected calls.
+	 */
+	public Map<String, Object> getMetrics() {
+		final Map<String, Object> result = new TreeMap<>();
+		circuits.forEach((key, circuit) -> {
+			synchronized (circuit) {
+				result.put(key.substring(0, key.length() - 56),
+						Map.of("state", circuit.state, "failures", circuit.failures, "rejected", circuit.rejected));
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Close all the circuits.
+	 */
+	public void clear() {
+		circuits.clear();
+	}
+}
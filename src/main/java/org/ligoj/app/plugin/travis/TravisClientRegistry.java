@@ -0,0 +1,272 @@
+package org.ligoj.app.plugin.travis;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+
+/**
+ * Registry of the shared {@link TravisCurlProcessor} instances, one per Travis API URL and API token. A processor
+ * keeps its connections alive between two calls, so the TLS handshake is paid once per host. Unused processors are
+ * closed after an idle period, this includes the ones of nodes whose URL or token has been changed.
+ */
+@Component
+public class TravisClientRegistry {
+
+	/**
+	 * Configuration key of the concurrency cap: the maximal amount of concurrent requests per Travis API URL and
+	 * token. This is not a connection pool size, the connections are kept alive by the processor's HTTP client.
+	 */
+	public static final String CONF_CONCURRENCY = TravisPluginResource.KEY + ":concurrency";
+
+	/**
+	 * Configuration key of the maximal amount of concurrent streamed responses, such as the job logs, per Travis API
+	 * URL and token. The streams do not hold the permits of the concurrency cap.
+	 */
+	public static final String CONF_STREAM_CONCURRENCY = TravisPluginResource.KEY + ":stream-concurrency";
+
+	/**
+	 * Configuration key of the idle duration, in seconds, after which an unused processor is closed.
+	 */
+	public static final String CONF_POOL_IDLE = TravisPluginResource.KEY + ":pool-idle";
+
+	/**
+	 * Default maximal amount of concurrent requests per Travis API URL and token.
+	 */
+	private static final int DEFAULT_CONCURRENCY = 10;
+
+	/**
+	 * Default maximal amount of concurrent streamed responses per Travis API URL and token.
+	 */
+	private static final int DEFAULT_STREAM_CONCURRENCY = 4;
+
+	/**
+	 * Default idle duration, in seconds.
+	 */
+	private static final int DEFAULT_POOL_IDLE = 300;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@Autowired
+	private TravisRateLimiter limiter;
+
+	@Autowired
+	private TravisMetrics metrics;
+
+	@Autowired
+	private TravisCircuitBreaker breaker;
+
+	/**
+	 * Shared clients by API URL and token hash.
+	 */
+	private final Map<String, TravisClient> clients = new ConcurrentHashMap<>();
+
+	/**
+	 * Amount of closed idle clients.
+	 */
+	private final AtomicLong evicted = new AtomicLong();
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * A shared processor with its usage counters.
+	 */
+	@Getter
+	static class TravisClient {
+		private final TravisCurlProcessor processor;
+		private final Semaphore permits;
+		private final int size;
+
+		/**
+		 * Permits of the streamed responses, apart from the concurrency cap of the other requests.
+		 */
+		private final Semaphore streams;
+		private final int streamSize;
+		private final AtomicLong requests = new AtomicLong();
+
+		/**
+		 * Amount of callers using this client, including the ones waiting for a permit. A used client is not evicted.
+		 */
+		private final AtomicInteger users = new AtomicInteger();
+		private volatile long lastUsed = System.currentTimeMillis();
+
+		TravisClient(final Map<String, String> parameters, final int size, final int streams,
+				final TravisRateLimiter limiter, final TravisMetrics metrics, final TravisCircuitBreaker breaker) {
+			this.size = size;
+			this.permits = new Semaphore(size, true);
+			this.streamSize = streams;
+			this.streams = new Semaphore(streams, true);
+			this.processor = new TravisCurlProcessor(parameters, limiter, metrics, breaker, permits);
+		}
+
+		/**
+		 * Return the amount of running requests.
+		 *
+		 * @return The amount of running requests.
+		 */
+		int getActive() {
+			return size - permits.availablePermits();
+		}
+
+		/**
+		 * Return the amount of running streams.
+		 *
+		 * @return The amount of running streams.
+		 */
+		int getStreaming() {
+			return streamSize - streams.availablePermits();
+		}
+	}
+
+	/**
+	 * Start the idle client eviction.
+	 */
+	@PostConstruct
+	public void start() {
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			final var thread = new Thread(r, "travis-client-eviction");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::evictIdle, 1, 1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Close all the clients.
+	 */
+	@PreDestroy
+	public void stop() {
+		scheduler.shutdownNow();
+		clients.values().forEach(c -> c.getProcessor().close());
+		clients.clear();
+	}
+
+	/**
+	 * Close the clients not used since the configured idle duration.
+	 */
+	void evictIdle() {
+		final long limit = System.currentTimeMillis()
+				- TimeUnit.SECONDS.toMillis(configuration.get(CONF_POOL_IDLE, DEFAULT_POOL_IDLE));
+		clients.keySet().forEach(key -> clients.computeIfPresent(key, (k, client) -> {
+			// Atomic with the usage registration of the callers
+			if (client.getUsers().get() == 0 && client.getLastUsed() < limit) {
+				client.getProcessor().close();
+				evicted.incrementAndGet();
+				return null;
+			}
+			return client;
+		}));
+	}
+
+	/**
+	 * Return the registry key of the given node parameters. The token is hashed to keep it out of the memory dumps.
+	 *
+	 * @param parameters The node parameters.
+	 * @return The key built from the API URL and the token hash.
+	 */
+	static String toKey(final Map<String, String> parameters) {
+		final String url = parameters.get(TravisPluginResource.PARAMETER_URL);
+		final String token = Objects.toString(parameters.get(TravisPluginResource.PARAMETER_TOKEN), "");
+		try {
+			final var digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+			return url + "|" + HexFormat.of().formatHex(digest);
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Run the given action with the shared processor of the given node parameters. The call waits while the
+	 * concurrency cap of this processor is reached.
+	 *
+	 * @param parameters The node parameters.
+	 * @param action     The action using the processor.
+	 * @param <T>        The result type.
+	 * @return The action's result.
+	 */
+	public <T> T execute(final Map<String, String> parameters, final Function<TravisCurlProcessor, T> action) {
+		return execute(parameters, action, TravisClient::getPermits);
+	}
+
+	/**
+	 * Run the given streaming action with the shared processor of the given node parameters. The call waits while
+	 * the stream cap of this processor is reached, and does not hold a permit of the concurrency cap: a long stream
+	 * does not block the other requests of this node.
+	 *
+	 * @param parameters The node parameters.
+	 * @param action     The action using the processor, only processing streamed requests.
+	 * @param <T>        The result type.
+	 * @return The action's result.
+	 */
+	public <T> T stream(final Map<String, String> parameters, final Function<TravisCurlProcessor, T> action) {
+		return execute(parameters, action, TravisClient::getStreams);
+	}
+
+	private <T> T execute(final Map<String, String> parameters, final Function<TravisCurlProcessor, T> action,
+			final Function<TravisClient, Semaphore> cap) {
+		final var client = clients.compute(toKey(parameters), (k, c) -> {
+			final var used = c == null ? new TravisClient(parameters,
+					configuration.get(CONF_CONCURRENCY, DEFAULT_CONCURRENCY),
+					configuration.get(CONF_STREAM_CONCURRENCY, DEFAULT_STREAM_CONCURRENCY), limiter, metrics, breaker)
+					: c;
+			used.getUsers().incrementAndGet();
+			return used;
+		});
+		final var permits = cap.apply(client);
+		try {
+			try {
+				permits.acquire();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for a Travis connection", e);
+			}
+			try {
+				client.getRequests().incrementAndGet();
+				return action.apply(client.getProcessor());
+			} finally {
+				client.lastUsed = System.currentTimeMillis();
+				permits.release();
+			}
+		} finally {
+			client.getUsers().decrementAndGet();
+		}
+	}
+
+	/**
+	 * Return the pool metrics.
+	 *
+	 * @return The pool metrics: amount of clients, evicted clients, and for each API URL and token hash prefix the
+	 *         running requests, the waiting requests, the total requests, the concurrency cap and the running
+	 *         streams.
+	 */
+	public Map<String, Object> getMetrics() {
+		final Map<String, Object> result = new TreeMap<>();
+		result.put("clients", clients.size());
+		result.put("evicted", evicted.get());
+		clients.forEach((key, client) -> result.put(key.substring(0, key.length() - 56),
+				Map.of("active", client.getActive(), "waiting", client.getPermits().getQueueLength(), "requests",
+						client.getRequests().get(), "concurrency", client.getSize(), "streams",
+						client.getStreaming())));
+		return result;
+	}
+}
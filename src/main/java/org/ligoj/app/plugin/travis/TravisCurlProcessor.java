@@ -1,23 +1,64 @@
 package org.ligoj.app.plugin.travis;
 
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 
 import org.ligoj.bootstrap.core.curl.CurlProcessor;
 import org.ligoj.bootstrap.core.curl.CurlRequest;
-import org.ligoj.bootstrap.core.curl.DefaultHttpResponseCallback;
 
 /**
- * Travis processor.
+ * Travis processor. The API v2 media type is requested, except for the requests flagged as API v3 ones.
  *
  * @see <a href="https://docs.travis-ci.com/api/">API</a>
+ * @see <a href="https://developer.travis-ci.com/">API v3</a>
  */
 public class TravisCurlProcessor extends CurlProcessor {
 
+	/**
+	 * Media type of the API v2.
+	 */
+	private static final String ACCEPT_V2 = "application/vnd.travis-ci.2+json";
+
+	/**
+	 * Maximal amount of retries of a throttled request.
+	 */
+	private static final int MAX_RETRY = 2;
+
 	/**
 	 * Token used to communicate with API.
 	 */
 	private final String apiToken;
 
+	/**
+	 * Optional rate limiter.
+	 */
+	private final TravisRateLimiter limiter;
+
+	/**
+	 * Rate limiter key: API URL and token hash.
+	 */
+	private final String key;
+
+	/**
+	 * Optional meters of the requests.
+	 */
+	private final TravisMetrics metrics;
+
+	/**
+	 * Node tag of the meters: API URL.
+	 */
+	private final String node;
+
+	/**
+	 * Optional circuit breaker recording the request outcomes and providing the request timeout.
+	 */
+	private final TravisCircuitBreaker breaker;
+
+	/**
+	 * Optional concurrency permits of this processor, one being held by each running request.
+	 */
+	private final Semaphore permits;
+
 	/**
 	 * Constructor using parameters set.
 	 *
@@ -25,19 +66,122 @@ public class TravisCurlProcessor extends CurlProcessor {
 	 *            the Travis parameters.
 	 */
 	public TravisCurlProcessor(final Map<String, String> parameters) {
-		super(new DefaultHttpResponseCallback());
+		this(parameters, null, null, null);
+	}
+
+	/**
+	 * Constructor using parameters set and a rate limiter.
+	 *
+	 * @param parameters
+	 *            the Travis parameters.
+	 * @param limiter
+	 *            the optional rate limiter scheduling the requests.
+	 * @param metrics
+	 *            the optional meters of the requests.
+	 * @param breaker
+	 *            the optional circuit breaker of this node.
+	 */
+	public TravisCurlProcessor(final Map<String, String> parameters, final TravisRateLimiter limiter,
+			final TravisMetrics metrics, final TravisCircuitBreaker breaker) {
+		this(parameters, limiter, metrics, breaker, null);
+	}
+
+	/**
+	 * Constructor using parameters set, a rate limiter and the concurrency permits held by the callers.
+	 *
+	 * @param parameters
+	 *            the Travis parameters.
+	 * @param limiter
+	 *            the optional rate limiter scheduling the requests.
+	 * @param metrics
+	 *            the optional meters of the requests.
+	 * @param breaker
+	 *            the optional circuit breaker of this node.
+	 * @param permits
+	 *            the optional concurrency permits, one being held by the caller of each request. It is released
+	 *            while the request waits for its rate limit budget.
+	 */
+	public TravisCurlProcessor(final Map<String, String> parameters, final TravisRateLimiter limiter,
+			final TravisMetrics metrics, final TravisCircuitBreaker breaker, final Semaphore permits) {
+		super(new TravisResponseCallback());
+		this.permits = permits;
 		this.apiToken = parameters.get(TravisPluginResource.PARAMETER_TOKEN);
+		this.limiter = limiter;
+		this.metrics = metrics;
+		this.breaker = breaker;
+		this.key = TravisClientRegistry.toKey(parameters);
+		this.node = parameters.get(TravisPluginResource.PARAMETER_URL);
 	}
 
 	/**
-	 * Process the given request.
+	 * Process the given request. With a rate limiter, the request waits for its budget and a throttled request is
+	 * retried once the rate limit is reset, when this reset is close enough. Each attempt is measured.
 	 */
 	@Override
 	protected boolean process(final CurlRequest request) {
 		request.getHeaders().put("Authorization", "token " + this.apiToken);
 		request.getHeaders().put("User-Agent", "Ligoj/1.0.0");
-		request.getHeaders().put("Accept", "application/vnd.travis-ci.2+json");
-		return super.process(request);
+		if (request instanceof TravisCurlRequest v3Request && v3Request.isV3()) {
+			request.getHeaders().put("Travis-API-Version", "3");
+			request.getHeaders().putIfAbsent("Accept", "application/json");
+		} else {
+			request.getHeaders().putIfAbsent("Accept", ACCEPT_V2);
+		}
+		if (!(request instanceof TravisCurlRequest travisRequest)) {
+			return super.process(request);
+		}
+		if (limiter == null) {
+			return measure(travisRequest);
+		}
+		boolean result;
+		int attempt = 0;
+		do {
+			travisRequest.reset();
+			acquire(travisRequest);
+			result = measure(travisRequest);
+		} while (limiter.update(key, travisRequest, travisRequest.getPriority()) && ++attempt <= MAX_RETRY);
+		return result;
+	}
+
+	/**
+	 * Wait for the rate limit budget of a request. The concurrency permit held by the caller is released while
+	 * waiting, so a delayed background request does not hold a slot needed by an interactive one. A streamed request
+	 * does not hold such permit.
+	 */
+	private void acquire(final TravisCurlRequest request) {
+		final var priority = request.getPriority();
+		if (permits == null || request.isStreaming()) {
+			limiter.acquire(key, priority);
+			return;
+		}
+		if (limiter.tryAcquire(key, priority)) {
+			return;
+		}
+		permits.release();
+		try {
+			limiter.acquire(key, priority);
+		} finally {
+			permits.acquireUninterruptibly();
+		}
+	}
+
+	/**
+	 * Process the given request within the node timeout, and record its meters and its outcome. A streamed request
+	 * has the longer stream timeout, and its outcome is not recorded by the circuit breaker.
+	 */
+	private boolean measure(final TravisCurlRequest request) {
+		if (breaker != null) {
+			request.setTimeout(request.isStreaming() ? breaker.getStreamTimeout() : breaker.getTimeout());
+		}
+		final long start = System.nanoTime();
+		final boolean result = super.process(request);
+		if (metrics != null) {
+			metrics.record(node, request, result, System.nanoTime() - start);
+		}
+		if (breaker != null && !request.isStreaming()) {
+			breaker.record(key, request.getStatusCode());
+		}
+		return result;
 	}
 
 }
@@ -0,0 +1,98 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.ligoj.bootstrap.core.curl.CurlRequest;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Travis request keeping the response status and headers.
+ */
+@Getter
+@Setter
+public class TravisCurlRequest extends CurlRequest {
+
+	/**
+	 * Response status code. <code>0</code> when no response has been received.
+	 */
+	private int statusCode;
+
+	/**
+	 * Response headers, case-insensitive.
+	 */
+	private final Map<String, String> responseHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+	/**
+	 * Optional parser of a successful response. When defined, the response is not saved as a string and the parsed
+	 * content is available in {@link #getResult()}.
+	 */
+	private TravisResponseParser<?> parser;
+
+	/**
+	 * The content parsed by {@link #getParser()}.
+	 */
+	private Object result;
+
+	/**
+	 * Size in bytes of the response body. <code>-1</code> when unknown.
+	 */
+	private long responseSize = -1;
+
+	/**
+	 * Duration in nanoseconds of the response parse by {@link #getParser()}.
+	 */
+	private long parseTime;
+
+	/**
+	 * Scheduling priority.
+	 */
+	private TravisRateLimiter.Priority priority = TravisRateLimiter.Priority.INTERACTIVE;
+
+	/**
+	 * Indicates the target is an API v3 endpoint, according to the API version of the node. Otherwise, the API v2
+	 * media type is requested.
+	 */
+	private boolean v3;
+
+	/**
+	 * Indicates the response is streamed to the client as it is received. Such a request has its own timeout and is
+	 * not recorded by the circuit breaker.
+	 */
+	private boolean streaming;
+
+	/**
+	 * All arguments constructor.
+	 *
+	 * @param method  The HTTP method.
+	 * @param url     The target URL.
+	 * @param content The optional content.
+	 * @param headers The optional headers.
+	 */
+	public TravisCurlRequest(final String method, final String url, final String content, final String... headers) {
+		super(method, url, content, headers);
+	}
+
+	/**
+	 * Forget the previous response before a retry.
+	 */
+	public void reset() {
+		statusCode = 0;
+		responseHeaders.clear();
+		result = null;
+		responseSize = -1;
+		parseTime = 0;
+	}
+
+	/**
+	 * Return the value of a response header.
+	 *
+	 * @param name The case-insensitive header name.
+	 * @return The header value. May be <code>null</code>.
+	 */
+	public String getResponseHeader(final String name) {
+		return responseHeaders.get(name);
+	}
+}
@@ -0,0 +1,322 @@
+package org.ligoj.app.plugin.travis;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.ligoj.app.plugin.travis.dao.TravisCacheEntryRepository;
+import org.ligoj.app.plugin.travis.dao.TravisCacheEventRepository;
+import org.ligoj.app.plugin.travis.model.TravisCacheEntry;
+import org.ligoj.app.plugin.travis.model.TravisCacheEvent;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Shared cache stored in the Ligoj database. The parsed resources are stored as JSON, and the fetch lease of a
+ * resource is acquired with a conditional update, so a single Ligoj node calls Travis for it. The invalidations are
+ * published in a table polled by each node. Each operation commits its own transaction to be immediately visible to
+ * the other nodes.
+ */
+@Component
+@Slf4j
+public class TravisDatabaseCache implements TravisSharedCache {
+
+	/**
+	 * Name of this implementation.
+	 */
+	public static final String NAME = "database";
+
+	/**
+	 * Overlap, in milliseconds, of two invalidation polls, covering the clock skew and the late commits.
+	 */
+	private static final long EVENT_OVERLAP = TimeUnit.SECONDS.toMillis(30);
+
+	/**
+	 * Retention, in milliseconds, of the invalidations.
+	 */
+	private static final long EVENT_RETENTION = TimeUnit.MINUTES.toMillis(10);
+
+	/**
+	 * Retention, in milliseconds, of the shared resources.
+	 */
+	private static final long ENTRY_RETENTION = TimeUnit.DAYS.toMillis(1);
+
+	/**
+	 * Amount of polls between two purges.
+	 */
+	private static final int PURGE_POLLS = 300;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private TravisCacheEntryRepository entries;
+
+	@Autowired
+	private TravisCacheEventRepository events;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * Identifier of this Ligoj node.
+	 */
+	private final String owner = UUID.randomUUID().toString();
+
+	/**
+	 * Publication time of the applied invalidations, by identifier.
+	 */
+	private final Map<Integer, Long> applied = new ConcurrentHashMap<>();
+
+	private BiConsumer<String, String> listener = (node, job) -> {
+		// No listener yet
+	};
+
+	/**
+	 * Time of the last invalidation poll, <code>0</code> before the first one.
+	 */
+	private long polled;
+
+	private int polls;
+
+	private ScheduledExecutorService scheduler;
+
+	private TransactionTemplate transaction;
+
+	/**
+	 * Start the invalidation polling.
+	 */
+	@PostConstruct
+	public void start() {
+		transaction = new TransactionTemplate(transactionManager);
+		transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			final var thread = new Thread(r, "travis-shared-cache");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::poll, 2, 2, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stop the invalidation polling.
+	 */
+	@PreDestroy
+	public void stop() {
+		scheduler.shutdownNow();
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * Return the entry identifier of a cache key.
+	 */
+	private static String toId(final TravisResponseCache.Key key) {
+		try {
+			final var digest = MessageDigest.getInstance("SHA-256");
+			digest.update(key.node().getBytes(StandardCharsets.UTF_8));
+			// Separator, not allowed in a URL
+			digest.update((byte) 0);
+			digest.update(key.resource().getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Return a new entry of a cache key.
+	 */
+	private static TravisCacheEntry newEntry(final TravisResponseCache.Key key) {
+		final var entry = new TravisCacheEntry();
+		entry.setId(toId(key));
+		entry.setNode(key.node());
+		entry.setResource(key.resource());
+		return entry;
+	}
+
+	@Override
+	public TravisResponseCache.Entry get(final TravisResponseCache.Key key) {
+		try {
+			final var entry = transaction.execute(s -> entries.findById(toId(key)).orElse(null));
+			if (entry == null || entry.getData() == null) {
+				return null;
+			}
+			return new TravisResponseCache.Entry(toValue(entry.getType(), entry.getData()), entry.getEtag(),
+					entry.getLastModified(), entry.getFetched());
+		} catch (final RuntimeException | ClassNotFoundException e) {
+			log.info("Unable to read the shared Travis resource: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public void put(final TravisResponseCache.Key key, final TravisResponseCache.Entry entry) {
+		try {
+			final var data = objectMapper.writeValueAsString(entry.getValue());
+			final var type = toType(entry.getValue());
+			transaction.executeWithoutResult(s -> {
+				final var shared = entries.findById(toId(key)).orElseGet(() -> newEntry(key));
+				shared.setData(data);
+				shared.setType(type);
+				shared.setEtag(entry.getEtag());
+				shared.setLastModified(entry.getLastModified());
+				shared.setFetched(entry.getFetched());
+				entries.save(shared);
+			});
+		} catch (final RuntimeException e) {
+			// Another node may have shared it first
+			log.info("Unable to share the Travis resource: {}", e.getMessage());
+		}
+	}
+
+	@Override
+	public boolean lease(final TravisResponseCache.Key key, final long duration) {
+		final var id = toId(key);
+		final long now = System.currentTimeMillis();
+		try {
+			return Boolean.TRUE.equals(transaction.execute(s -> {
+				if (entries.lease(id, owner, now, now + duration) > 0) {
+					return true;
+				}
+				if (entries.existsById(id)) {
+					return false;
+				}
+				final var entry = newEntry(key);
+				entry.setLease(now + duration);
+				entry.setOwner(owner);
+				entries.saveAndFlush(entry);
+				return true;
+			}));
+		} catch (final RuntimeException e) {
+			// Another node has created the entry first
+			return false;
+		}
+	}
+
+	@Override
+	public void release(final TravisResponseCache.Key key) {
+		try {
+			transaction.executeWithoutResult(s -> entries.release(toId(key), owner));
+		} catch (final RuntimeException e) {
+			log.info("Unable to release the shared Travis resource: {}", e.getMessage());
+		}
+	}
+
+	@Override
+	public void invalidate(final String node, final String job) {
+		try {
+			transaction.executeWithoutResult(s -> {
+				entries.deleteAll(entries.findAllByNode(node).stream()
+						.filter(e -> TravisResponseCache.matches(e.getResource(), job)).toList());
+				final var event = new TravisCacheEvent();
+				event.setNode(node);
+				event.setJob(job);
+				event.setCreated(System.currentTimeMillis());
+				events.save(event);
+			});
+		} catch (final RuntimeException e) {
+			log.warn("Unable to publish the invalidation of the Travis job {}", job, e);
+		}
+	}
+
+	@Override
+	public void subscribe(final BiConsumer<String, String> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Apply the invalidations published by the other Ligoj nodes since the last poll. The invalidations existing at
+	 * the first poll are ignored. Old invalidations and resources are purged periodically.
+	 */
+	synchronized void poll() {
+		if (!NAME.equals(configuration.get(TravisResponseCache.CONF_SHARED_CACHE, TravisLocalCache.NAME))) {
+			return;
+		}
+		try {
+			final long now = System.currentTimeMillis();
+			final var published = transaction.execute(s -> events.findAllByCreatedGreaterThanOrderById(
+					polled == 0 ? now - EVENT_RETENTION : polled - EVENT_OVERLAP));
+			for (final var event : published) {
+				if (applied.put(event.getId(), event.getCreated()) == null && polled != 0) {
+					listener.accept(event.getNode(), event.getJob());
+				}
+			}
+			polled = now;
+			applied.values().removeIf(created -> created < now - EVENT_RETENTION);
+			if (++polls % PURGE_POLLS == 0) {
+				transaction.executeWithoutResult(s -> {
+					events.deleteOlder(now - EVENT_RETENTION);
+					entries.deleteOlder(now - ENTRY_RETENTION);
+				});
+			}
+		} catch (final RuntimeException e) {
+			log.info("Unable to poll the Travis invalidations: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Return the stored type of a parsed resource.
+	 */
+	private String toType(final Object value) {
+		if (value instanceof List<?> list) {
+			return list.isEmpty() ? "[" : "[" + list.getFirst().getClass().getName();
+		}
+		return value.getClass().getName();
+	}
+
+	/**
+	 * Return the parsed resource from its stored type and JSON. Only the plug-in's types and strings are accepted.
+	 */
+	private Object toValue(final String type, final String data) throws ClassNotFoundException {
+		if ("[".equals(type)) {
+			return new ArrayList<>();
+		}
+		final boolean list = type.startsWith("[");
+		final var name = list ? type.substring(1) : type;
+		if (!String.class.getName().equals(name) && !name.startsWith(getClass().getPackageName() + ".")) {
+			throw new ClassNotFoundException(name);
+		}
+		final var clazz = Class.forName(name);
+		if (list) {
+			return objectMapper.readValue(data,
+					objectMapper.getTypeFactory().constructCollectionType(ArrayList.class, clazz));
+		}
+		return objectMapper.readValue(data, clazz);
+	}
+
+	@Override
+	public void clear() {
+		transaction.executeWithoutResult(s -> {
+			entries.deleteAllInBatch();
+			events.deleteAllInBatch();
+		});
+		applied.clear();
+		polled = 0;
+	}
+}
@@ -0,0 +1,161 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the blocking Travis calls of many items at once, each one in its own virtual thread. The amount of concurrent
+ * calls per node is capped, the waiting items only park their virtual thread. When the deadline is reached or when
+ * the caller is interrupted, the remaining tasks are interrupted and the partial results are returned at once,
+ * without waiting for the tasks blocked in a network read: these ones end with their request timeout.
+ */
+@Component
+@Slf4j
+public class TravisFanOut {
+
+	/**
+	 * Configuration key of the maximal amount of concurrent fan-out calls per Travis API URL and token.
+	 */
+	public static final String CONF_CONCURRENCY = TravisPluginResource.KEY + ":fanout-concurrency";
+
+	/**
+	 * Configuration key of the deadline, in seconds, of a fan-out.
+	 */
+	public static final String CONF_TIMEOUT = TravisPluginResource.KEY + ":fanout-timeout";
+
+	/**
+	 * Default maximal amount of concurrent calls per node.
+	 */
+	private static final int DEFAULT_CONCURRENCY = 8;
+
+	/**
+	 * Default deadline, in seconds.
+	 */
+	private static final int DEFAULT_TIMEOUT = 60;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	/**
+	 * Permits by API URL and token hash, shared by all the running fan-outs.
+	 */
+	private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+	/**
+	 * A blocking call of an item.
+	 *
+	 * @param <T> The item type.
+	 * @param <R> The result type.
+	 */
+	@FunctionalInterface
+	public interface Task<T, R> {
+
+		/**
+		 * Call Travis for an item.
+		 *
+		 * @param item The item.
+		 * @return The result. May be <code>null</code>.
+		 * @throws Exception When the call failed.
+		 */
+		R call(T item) throws Exception;
+	}
+
+	/**
+	 * Call Travis for all the items concurrently.
+	 *
+	 * @param items The items.
+	 * @param node  The API URL and token hash of an item, capping the concurrent calls.
+	 * @param task  The blocking call of an item.
+	 * @param <T>   The item type.
+	 * @param <R>   The result type.
+	 * @return The results in the items order. The result of a failed or cancelled call is <code>null</code>.
+	 */
+	public <T, R> List<R> invokeAll(final Collection<T> items, final Function<T, String> node,
+			final Task<T, R> task) {
+		final List<R> result = new ArrayList<>(items.size());
+		if (items.isEmpty()) {
+			return result;
+		}
+		final int concurrency = configuration.get(CONF_CONCURRENCY, DEFAULT_CONCURRENCY);
+		final long deadline = System.nanoTime()
+				+ TimeUnit.SECONDS.toNanos(configuration.get(CONF_TIMEOUT, DEFAULT_TIMEOUT));
+		final var scope = Executors.newVirtualThreadPerTaskExecutor();
+		try {
+			final List<Future<R>> futures = new ArrayList<>(items.size());
+			for (final var item : items) {
+				final var semaphore = permits.computeIfAbsent(node.apply(item), k -> new Semaphore(concurrency));
+				futures.add(scope.submit(() -> {
+					semaphore.acquire();
+					try {
+						return task.call(item);
+					} finally {
+						semaphore.release();
+					}
+				}));
+			}
+			for (final var future : futures) {
+				result.add(get(future, deadline));
+			}
+		} catch (final InterruptedException | TimeoutException e) {
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			log.info("Travis fan-out of {} items cancelled after {} results", items.size(), result.size());
+			while (result.size() < items.size()) {
+				result.add(null);
+			}
+		} finally {
+			// All the tasks are completed, unless cancelled: the executor is not awaited
+			scope.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * Return the result of a call before the deadline, <code>null</code> when the call failed.
+	 */
+	private <R> R get(final Future<R> future, final long deadline) throws InterruptedException, TimeoutException {
+		try {
+			return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (final ExecutionException e) {
+			log.info("Travis call failed: {}", e.getCause().getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Return the fan-out metrics.
+	 *
+	 * @return The metrics by API URL and token hash prefix: available permits and waiting calls.
+	 */
+	public Map<String, Object> getMetrics() {
+		final Map<String, Object> result = new TreeMap<>();
+		permits.forEach((key, semaphore) -> result.put(key.substring(0, key.length() - 56),
+				Map.of("available", semaphore.availablePermits(), "waiting", semaphore.getQueueLength())));
+		return result;
+	}
+
+	/**
+	 * Drop the permits, the next fan-outs use the configured concurrency.
+	 */
+	public void clear() {
+		permits.clear();
+	}
+}
@@ -0,0 +1,427 @@
+package org.ligoj.app.plugin.travis;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Streaming parser of the Travis repositories into {@link Job}, and of their builds. Tokens are read from the
+ * response stream without building an intermediate tree, and the unused properties are skipped. Both the API v2 and
+ * the API v3 documents are supported.
+ */
+@Component
+public class TravisJobParser {
+
+	/**
+	 * Travis states of a not yet finished build or job.
+	 */
+	private static final Set<String> RUNNING = Set.of("created", "received", "queued", "started");
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	/**
+	 * Parse a repository document: <code>{"repo":{...}}</code>.
+	 *
+	 * @param input The JSON stream.
+	 * @return The job. <code>null</code> when there is no repository.
+	 */
+	public Job parseRepo(final InputStream input) {
+		try (var parser = objectMapper.createParser(input)) {
+			return seek(parser, "repo") == JsonToken.START_OBJECT ? parseRepo(parser) : null;
+		}
+	}
+
+	/**
+	 * Parse the user document of the token: <code>{"user":{"login":"...",...}}</code>.
+	 *
+	 * @param input The JSON stream.
+	 * @return The user login. <code>null</code> when there is no user.
+	 */
+	public String parseUser(final InputStream input) {
+		try (var parser = objectMapper.createParser(input)) {
+			if (seek(parser, "user") == JsonToken.START_OBJECT) {
+				while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+					final var name = parser.currentName();
+					parser.nextToken();
+					if ("login".equals(name)) {
+						return parser.getValueAsString();
+					}
+					parser.skipChildren();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parse an API v3 repository document: <code>{"@type":"repository",...,"current_build":{...}}</code>.
+	 *
+	 * @param input The JSON stream.
+	 * @return The job. <code>null</code> when there is no repository.
+	 */
+	public Job parseRepository(final InputStream input) {
+		try (var parser = objectMapper.createParser(input)) {
+			return parser.nextToken() == JsonToken.START_OBJECT ? parseRepo(parser) : null;
+		}
+	}
+
+	/**
+	 * Parse a repository listing: <code>{"repos":[{...},...]}</code>.
+	 *
+	 * @param input The JSON stream.
+	 * @return The jobs, in the listing order.
+	 */
+	public List<Job> parseRepos(final InputStream input) {
+		final List<Job> result = new ArrayList<>();
+		try (var parser = objectMapper.createParser(input)) {
+			if (seek(parser, "repos") == JsonToken.START_ARRAY) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					result.add(parseRepo(parser));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Parse a build listing: <code>{"builds":[{...},...],"commits":[{...},...]}</code>. The commit time of each build
+	 * is taken from the commits, or from the commit nested in each build with the API v3.
+	 *
+	 * @param input The JSON stream.
+	 * @return The builds, the most recent first.
+	 */
+	public List<Build> parseBuilds(final InputStream input) {
+		final List<Build> result = new ArrayList<>();
+		final Map<String, String> commits = new HashMap<>();
+		try (var parser = objectMapper.createParser(input)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return result;
+			}
+			while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+				final var name = parser.currentName();
+				final var token = parser.nextToken();
+				if ("builds".equals(name) && token == JsonToken.START_ARRAY) {
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						result.add(parseBuild(parser));
+					}
+				} else if ("commits".equals(name) && token == JsonToken.START_ARRAY) {
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						parseCommit(parser, commits);
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+		if (!commits.isEmpty()) {
+			result.forEach(b -> b.setCommittedAt(commits.get(b.getCommitId())));
+		}
+		return result;
+	}
+
+	/**
+	 * Parse a build document with its jobs: <code>{"build":{...},"commit":{...},"jobs":[{...},...]}</code>.
+	 *
+	 * @param input The JSON stream.
+	 * @return The build. <code>null</code> when there is no build.
+	 */
+	public Build parseBuildDetails(final InputStream input) {
+		Build result = null;
+		final List<BuildJob> jobs = new ArrayList<>();
+		try (var parser = objectMapper.createParser(input)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return null;
+			}
+			while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+				final var name = parser.currentName();
+				final var token = parser.nextToken();
+				if ("build".equals(name) && token == JsonToken.START_OBJECT) {
+					result = parseBuild(parser);
+				} else if ("jobs".equals(name) && token == JsonToken.START_ARRAY) {
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						jobs.add(parseJob(parser));
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+		if (result != null) {
+			result.setJobs(jobs);
+		}
+		return result;
+	}
+
+	/**
+	 * Parse an API v3 build document with its included jobs: <code>{"@type":"build",...,"jobs":[{...},...]}</code>.
+	 *
+	 * @param input The JSON stream.
+	 * @return The build. <code>null</code> when there is no build.
+	 */
+	public Build parseBuild(final InputStream input) {
+		try (var parser = objectMapper.createParser(input)) {
+			return parser.nextToken() == JsonToken.START_OBJECT ? parseBuild(parser) : null;
+		}
+	}
+
+	/**
+	 * Parse a job document: <code>{"job":{...},"commit":{...}}</code>.
+	 *
+	 * @param input The JSON stream.
+	 * @return The job. <code>null</code> when there is no job.
+	 */
+	public BuildJob parseJob(final InputStream input) {
+		try (var parser = objectMapper.createParser(input)) {
+			return seek(parser, "job") == JsonToken.START_OBJECT ? parseJob(parser) : null;
+		}
+	}
+
+	/**
+	 * Parse a build notification payload sent by the Travis webhook.
+	 *
+	 * @param payload The JSON payload.
+	 * @return The notified job status. The description is not available. <code>null</code> when the payload has no
+	 *         repository or no state.
+	 */
+	public Job parseNotification(final String payload) {
+		final JsonNode node = objectMapper.readTree(payload);
+		final var repository = node.path("repository");
+		final var owner = repository.path("owner_name").asString(null);
+		final var name = repository.path("name").asString(null);
+		final var state = node.path("state").asString(null);
+		if (owner == null || name == null || state == null) {
+			return null;
+		}
+		final var result = new Job();
+		result.setId(owner + "/" + name);
+		result.setName(result.getId());
+		result.setLastBuildId(node.path("id").asString(null));
+		result.setStatus(TravisPluginResource.toStatus(state));
+		result.setBuilding("started".equals(state));
+		return result;
+	}
+
+	/**
+	 * Move the parser to the value of a property of the root object.
+	 *
+	 * @param parser   The parser positioned before the root object.
+	 * @param property The property name.
+	 * @return The token of the property's value, <code>null</code> when not found.
+	 */
+	private JsonToken seek(final JsonParser parser, final String property) {
+		if (parser.nextToken() != JsonToken.START_OBJECT) {
+			return null;
+		}
+		while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+			final var name = parser.currentName();
+			final var token = parser.nextToken();
+			if (property.equals(name)) {
+				return token;
+			}
+			parser.skipChildren();
+		}
+		return null;
+	}
+
+	/**
+	 * Parse a repository object.
+	 *
+	 * @param parser The parser positioned on the repository's start object.
+	 * @return The job.
+	 */
+	private Job parseRepo(final JsonParser parser) {
+		final var result = new Job();
+		String state = null;
+		while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+			final var name = parser.currentName();
+			final var token = parser.nextToken();
+			switch (name) {
+			case "slug" -> {
+				result.setId(parser.getValueAsString());
+				result.setName(result.getId());
+			}
+			case "description" -> result.setDescription(parser.getValueAsString());
+			case "last_build_state" -> state = parser.getValueAsString();
+			case "last_build_id" -> result.setLastBuildId(parser.getValueAsString());
+			case "last_build_finished_at" -> result.setLastBuildFinishedAt(parser.getValueAsString());
+			case "current_build" -> {
+				if (token == JsonToken.START_OBJECT) {
+					final var build = parseBuild(parser);
+					result.setLastBuildId(build.getId());
+					result.setLastBuildFinishedAt(build.getFinishedAt());
+					state = build.getState();
+				}
+			}
+			default -> parser.skipChildren();
+			}
+		}
+		result.setStatus(TravisPluginResource.toStatus(state));
+		result.setBuilding("started".equals(state));
+		return result;
+	}
+
+	/**
+	 * Parse a build object.
+	 *
+	 * @param parser The parser positioned on the build's start object.
+	 * @return The build.
+	 */
+	private Build parseBuild(final JsonParser parser) {
+		final var result = new Build();
+		while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+			final var name = parser.currentName();
+			final var token = parser.nextToken();
+			switch (name) {
+			case "id" -> result.setId(parser.getValueAsString());
+			case "number" -> result.setNumber(parser.getValueAsString());
+			case "state" -> result.setState(parser.getValueAsString());
+			case "started_at" -> result.setStartedAt(parser.getValueAsString());
+			case "finished_at" -> result.setFinishedAt(parser.getValueAsString());
+			case "duration" -> result.setDuration(token == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : null);
+			case "event_type" -> result.setEventType(parser.getValueAsString());
+			case "commit_id" -> result.setCommitId(parser.getValueAsString());
+			case "job_ids" -> {
+				while (token == JsonToken.START_ARRAY && parser.nextToken() != JsonToken.END_ARRAY) {
+					result.getJobIds().add(parser.getValueAsString());
+				}
+			}
+			case "commit" -> {
+				if (token == JsonToken.START_OBJECT) {
+					final Map<String, String> commit = new HashMap<>(1);
+					parseCommit(parser, commit);
+					commit.forEach((id, committedAt) -> {
+						result.setCommitId(id);
+						result.setCommittedAt(committedAt);
+					});
+				}
+			}
+			case "jobs" -> parseJobs(parser, token, result);
+			case "repository" -> result.setRepositorySlug(parseSlug(parser, token));
+			default -> parser.skipChildren();
+			}
+		}
+		result.setStatus(TravisPluginResource.toStatus(result.getState()));
+		result.setBuilding(isRunning(result.getState()));
+		return result;
+	}
+
+	/**
+	 * Parse a commit object and save its commit time.
+	 *
+	 * @param parser  The parser positioned on the commit's start object.
+	 * @param commits The commit times by commit identifier.
+	 */
+	private void parseCommit(final JsonParser parser, final Map<String, String> commits) {
+		String id = null;
+		String committedAt = null;
+		while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+			final var name = parser.currentName();
+			parser.nextToken();
+			switch (name) {
+			case "id" -> id = parser.getValueAsString();
+			case "committed_at" -> committedAt = parser.getValueAsString();
+			default -> parser.skipChildren();
+			}
+		}
+		if (id != null) {
+			commits.put(id, committedAt);
+		}
+	}
+
+	/**
+	 * Parse a job object.
+	 *
+	 * @param parser The parser positioned on the job's start object.
+	 * @return The job.
+	 */
+	private BuildJob parseJob(final JsonParser parser) {
+		final var result = new BuildJob();
+		while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+			final var name = parser.currentName();
+			final var token = parser.nextToken();
+			switch (name) {
+			case "id" -> result.setId(parser.getValueAsString());
+			case "number" -> result.setNumber(parser.getValueAsString());
+			case "state" -> result.setState(parser.getValueAsString());
+			case "started_at" -> result.setStartedAt(parser.getValueAsString());
+			case "finished_at" -> result.setFinishedAt(parser.getValueAsString());
+			case "repository_slug" -> result.setRepositorySlug(parser.getValueAsString());
+			case "repository" -> result.setRepositorySlug(parseSlug(parser, token));
+			default -> parser.skipChildren();
+			}
+		}
+		result.setStatus(TravisPluginResource.toStatus(result.getState()));
+		result.setBuilding(isRunning(result.getState()));
+		return result;
+	}
+
+	/**
+	 * Parse the API v3 jobs of a build. The jobs are in the minimal representation, unless they are included.
+	 *
+	 * @param parser The parser positioned on the jobs' start array.
+	 * @param token  The current token.
+	 * @param build  The build to complete.
+	 */
+	private void parseJobs(final JsonParser parser, final JsonToken token, final Build build) {
+		if (token != JsonToken.START_ARRAY) {
+			parser.skipChildren();
+			return;
+		}
+		final List<BuildJob> jobs = new ArrayList<>();
+		while (parser.nextToken() == JsonToken.START_OBJECT) {
+			final var job = parseJob(parser);
+			build.getJobIds().add(job.getId());
+			jobs.add(job);
+		}
+		if (jobs.stream().anyMatch(j -> j.getState() != null)) {
+			build.setJobs(jobs);
+		}
+	}
+
+	/**
+	 * Return the slug of an API v3 minimal repository object.
+	 *
+	 * @param parser The parser positioned on the repository's start object.
+	 * @param token  The current token.
+	 * @return The repository slug. <code>null</code> when not available.
+	 */
+	private String parseSlug(final JsonParser parser, final JsonToken token) {
+		String result = null;
+		if (token != JsonToken.START_OBJECT) {
+			parser.skipChildren();
+			return result;
+		}
+		while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+			final var name = parser.currentName();
+			parser.nextToken();
+			if ("slug".equals(name)) {
+				result = parser.getValueAsString();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Indicates the given Travis state is not yet final, and the log may still grow.
+	 *
+	 * @param state The Travis state.
+	 * @return <code>true</code> for a created, received, queued or started state.
+	 */
+	static boolean isRunning(final String state) {
+		return state != null && RUNNING.contains(state);
+	}
+}
@@ -0,0 +1,349 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ligoj.app.model.Subscription;
+import org.ligoj.app.plugin.travis.dao.TravisJobStateRepository;
+import org.ligoj.app.plugin.travis.model.TravisJobState;
+import org.ligoj.app.resource.node.ParameterValueResource;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persistent last known state of the subscribed jobs. The fetched states are kept in memory, then written behind in
+ * batches to the {@link TravisJobState} table, one row per subscription. When Ligoj starts, the rows are restored so
+ * the status reads are served without any Travis call until a fresh fetch replaces them. The table being shared, all
+ * the nodes of a cluster start with the same view.
+ */
+@Component
+@Slf4j
+public class TravisJobStateStore {
+
+	/**
+	 * Configuration key of the delay, in seconds, between two writes of the fetched states.
+	 */
+	public static final String CONF_STATE_FLUSH = TravisPluginResource.KEY + ":state-flush";
+
+	/**
+	 * Configuration key of the maximal age, in seconds, of a restored state served to the status reads.
+	 */
+	public static final String CONF_STATE_AGE = TravisPluginResource.KEY + ":state-age";
+
+	/**
+	 * Default write delay, in seconds.
+	 */
+	private static final int DEFAULT_STATE_FLUSH = 10;
+
+	/**
+	 * Default maximal age of a restored state, in seconds.
+	 */
+	private static final int DEFAULT_STATE_AGE = 86400;
+
+	/**
+	 * Maximal amount of subscriptions written by a transaction.
+	 */
+	private static final int BATCH_SIZE = 100;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@Autowired
+	private ParameterValueResource pvResource;
+
+	@Autowired
+	private TravisJobStateRepository repository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager em;
+
+	/**
+	 * States by API URL, token hash and slug.
+	 */
+	private final Map<String, State> states = new ConcurrentHashMap<>();
+
+	/**
+	 * Subscription identifiers by API URL, token hash and slug.
+	 */
+	private final Map<String, Set<Integer>> subscriptions = new ConcurrentHashMap<>();
+
+	/**
+	 * The jobs whose state is not yet written.
+	 */
+	private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+
+	private ScheduledExecutorService scheduler;
+
+	private TransactionTemplate transaction;
+
+	/**
+	 * The last known state of a job.
+	 *
+	 * @param job      The job.
+	 * @param etag     The <code>ETag</code> validator of the Travis repository document. May be <code>null</code>.
+	 * @param fetched  The fetch time in milliseconds since the epoch.
+	 * @param restored <code>true</code> when restored from the table, and not yet replaced by a fresh fetch.
+	 */
+	public record State(Job job, String etag, long fetched, boolean restored) {
+	}
+
+	/**
+	 * Start the writer thread.
+	 */
+	@PostConstruct
+	public void start() {
+		transaction = new TransactionTemplate(transactionManager);
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			final var thread = new Thread(r, "travis-job-state");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Stop the writer thread, the pending states are written.
+	 */
+	@PreDestroy
+	public void stop() {
+		scheduler.shutdownNow();
+		flush();
+	}
+
+	/**
+	 * Restore the persisted states in the background, then write the fetched states periodically.
+	 *
+	 * @param restore Called with the subscription parameters of each restored state.
+	 */
+	public void schedule(final BiConsumer<Map<String, String>, State> restore) {
+		final long delay = configuration.get(CONF_STATE_FLUSH, DEFAULT_STATE_FLUSH);
+		scheduler.execute(() -> load(restore));
+		scheduler.scheduleWithFixedDelay(this::flush, delay, delay, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Return the store key of the job of the given subscription parameters.
+	 */
+	private String toKey(final Map<String, String> parameters) {
+		return TravisClientRegistry.toKey(parameters) + "|" + parameters.get(TravisPluginResource.PARAMETER_JOB);
+	}
+
+	/**
+	 * Restore the persisted states. A state already fetched by this instance is kept.
+	 *
+	 * @param restore Called with the subscription parameters of each restored state.
+	 */
+	void load(final BiConsumer<Map<String, String>, State> restore) {
+		try {
+			transaction.executeWithoutResult(s -> {
+				final Map<String, Map<String, String>> nodes = new HashMap<>();
+				for (final var row : repository.findAll()) {
+					final Map<String, String> parameters = new HashMap<>(nodes.computeIfAbsent(
+							row.getSubscription().getNode().getId(), pvResource::getNodeParameters));
+					parameters.put(TravisPluginResource.PARAMETER_JOB, row.getJob());
+					final var key = toKey(parameters);
+					subscriptions.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet())
+							.add(row.getSubscription().getId());
+					final var state = new State(toJob(row), row.getEtag(), row.getFetched(), true);
+					if (states.putIfAbsent(key, state) == null) {
+						restore.accept(parameters, state);
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			log.warn("Unable to restore the Travis job states", e);
+		}
+	}
+
+	/**
+	 * Return the job of a persisted state.
+	 */
+	private Job toJob(final TravisJobState row) {
+		final var job = new Job();
+		job.setId(row.getJob());
+		job.setName(row.getJob());
+		job.setDescription(row.getDescription());
+		job.setStatus(row.getStatus());
+		job.setBuilding(row.isBuilding());
+		job.setLastBuildId(row.getLastBuildId());
+		job.setLastBuildFinishedAt(row.getLastBuildFinishedAt());
+		return job;
+	}
+
+	/**
+	 * Attach a subscription to its job, so the state of this job is written for this subscription.
+	 *
+	 * @param subscription The subscription identifier.
+	 * @param parameters   The subscription parameters.
+	 */
+	public void bind(final int subscription, final Map<String, String> parameters) {
+		final var key = toKey(parameters);
+		if (subscriptions.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscription)
+				&& states.containsKey(key)) {
+			dirty.add(key);
+		}
+	}
+
+	/**
+	 * Detach a deleted subscription. Its persisted state must be deleted by the caller.
+	 *
+	 * @param subscription The subscription identifier.
+	 */
+	public void unbind(final int subscription) {
+		subscriptions.values().forEach(s -> s.remove(subscription));
+	}
+
+	/**
+	 * Record a fetched job. The state is written by the next flush, only when the job has been fetched again since
+	 * the known state or when its status has changed: a job served by the cache is not written again.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param job        The fetched job.
+	 * @param etag       The <code>ETag</code> validator of the job. May be <code>null</code>.
+	 * @param fetched    The fetch time of the job in milliseconds since the epoch.
+	 */
+	public void put(final Map<String, String> parameters, final Job job, final String etag, final long fetched) {
+		final var key = toKey(parameters);
+		final var previous = states.get(key);
+		if (previous != null && previous.fetched() == fetched && isSame(previous.job(), job)) {
+			return;
+		}
+		states.put(key, new State(job, etag, fetched, false));
+		dirty.add(key);
+	}
+
+	/**
+	 * Indicates the persisted properties of two jobs are equal.
+	 */
+	private static boolean isSame(final Job previous, final Job job) {
+		return Objects.equals(previous.getStatus(), job.getStatus()) && previous.isBuilding() == job.isBuilding()
+				&& Objects.equals(previous.getLastBuildId(), job.getLastBuildId())
+				&& Objects.equals(previous.getLastBuildFinishedAt(), job.getLastBuildFinishedAt())
+				&& Objects.equals(previous.getDescription(), job.getDescription());
+	}
+
+	/**
+	 * Return the restored state of a job, until a fresh fetch replaces it.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @return The restored job. <code>null</code> when not restored, already fetched or older than the configured
+	 *         maximal age.
+	 */
+	public Job get(final Map<String, String> parameters) {
+		final var state = states.get(toKey(parameters));
+		if (state == null || !state.restored() || System.currentTimeMillis() - state.fetched() > TimeUnit.SECONDS
+				.toMillis(configuration.get(CONF_STATE_AGE, DEFAULT_STATE_AGE))) {
+			return null;
+		}
+		return state.job();
+	}
+
+	/**
+	 * Write the pending states, a transaction per batch of subscriptions. A failed batch is written again by the
+	 * next flush.
+	 */
+	public void flush() {
+		final List<String> keys = List.copyOf(dirty);
+		keys.forEach(dirty::remove);
+		final Map<Integer, String> jobs = new LinkedHashMap<>();
+		keys.forEach(key -> {
+			if (states.containsKey(key)) {
+				subscriptions.getOrDefault(key, Set.of()).forEach(s -> jobs.put(s, key));
+			}
+		});
+		final List<Integer> ids = List.copyOf(jobs.keySet());
+		for (int i = 0; i < ids.size(); i += BATCH_SIZE) {
+			final var batch = ids.subList(i, Math.min(ids.size(), i + BATCH_SIZE));
+			try {
+				transaction.executeWithoutResult(s -> write(batch, jobs));
+				written.addAndGet(batch.size());
+			} catch (final RuntimeException e) {
+				failures.incrementAndGet();
+				log.info("Unable to write {} Travis job states: {}", batch.size(), e.getMessage());
+				batch.forEach(id -> dirty.add(jobs.get(id)));
+			}
+		}
+	}
+
+	/**
+	 * Write the states of a batch of subscriptions.
+	 */
+	private void write(final List<Integer> batch, final Map<Integer, String> jobs) {
+		final Map<Integer, TravisJobState> rows = repository.findAllBySubscriptionIdIn(batch).stream()
+				.collect(Collectors.toMap(r -> r.getSubscription().getId(), Function.identity()));
+		final List<TravisJobState> changed = new ArrayList<>(batch.size());
+		for (final int id : batch) {
+			final var state = states.get(jobs.get(id));
+			final var row = rows.computeIfAbsent(id, k -> {
+				final var created = new TravisJobState();
+				created.setSubscription(em.getReference(Subscription.class, k));
+				return created;
+			});
+			final var job = state.job();
+			row.setJob(job.getId());
+			row.setDescription(StringUtils.truncate(job.getDescription(), 1024));
+			row.setStatus(job.getStatus());
+			row.setBuilding(job.isBuilding());
+			row.setLastBuildId(job.getLastBuildId());
+			row.setLastBuildFinishedAt(job.getLastBuildFinishedAt());
+			row.setEtag(state.etag());
+			row.setFetched(state.fetched());
+			changed.add(row);
+		}
+		repository.saveAll(changed);
+	}
+
+	/**
+	 * Return the store metrics.
+	 *
+	 * @return The amount of known states, of restored states not yet replaced, of pending jobs, of written
+	 *         subscription states and of failed batches.
+	 */
+	public Map<String, Object> getMetrics() {
+		final Map<String, Object> result = new TreeMap<>();
+		result.put("states", states.size());
+		result.put("restored", states.values().stream().filter(State::restored).count());
+		result.put("pending", dirty.size());
+		result.put("written", written.get());
+		result.put("failures", failures.get());
+		return result;
+	}
+
+	/**
+	 * Drop the states kept in memory, the persisted ones are kept.
+	 */
+	public void clear() {
+		states.clear();
+		subscriptions.clear();
+		dirty.clear();
+	}
+}
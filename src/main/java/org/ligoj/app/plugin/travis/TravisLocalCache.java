@@ -0,0 +1,58 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.function.BiConsumer;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process shared cache, the default one. Nothing is shared: the first level of {@link TravisResponseCache} is
+ * enough for a single Ligoj node, and the lease is always granted.
+ */
+@Component
+public class TravisLocalCache implements TravisSharedCache {
+
+	/**
+	 * Name of this implementation.
+	 */
+	public static final String NAME = "local";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public TravisResponseCache.Entry get(final TravisResponseCache.Key key) {
+		return null;
+	}
+
+	@Override
+	public void put(final TravisResponseCache.Key key, final TravisResponseCache.Entry entry) {
+		// Already in the first level
+	}
+
+	@Override
+	public boolean lease(final TravisResponseCache.Key key, final long duration) {
+		return true;
+	}
+
+	@Override
+	public void release(final TravisResponseCache.Key key) {
+		// No lease
+	}
+
+	@Override
+	public void invalidate(final String node, final String job) {
+		// No other node
+	}
+
+	@Override
+	public void subscribe(final BiConsumer<String, String> listener) {
+		// No other node
+	}
+
+	@Override
+	public void clear() {
+		// Nothing shared
+	}
+}
@@ -0,0 +1,180 @@
+package org.ligoj.app.plugin.travis;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer meters of the Travis interactions. The meters are tagged by node API URL, never by token.
+ * <ul>
+ * <li><code>travis.request</code>: timer of each HTTP request, tagged by operation, status class and outcome.</li>
+ * <li><code>travis.response.size</code>: size in bytes of the response bodies, tagged by operation.</li>
+ * <li><code>travis.parse</code>: timer of the JSON parse of the response bodies, tagged by operation. The copy of
+ * the streamed responses is not a parse, and is not recorded.</li>
+ * <li><code>travis.operation</code>: timer of the plug-in entry points, tagged by operation and outcome.</li>
+ * <li><code>travis.cache</code>: counter of the response cache lookups, tagged by result.</li>
+ * </ul>
+ * The global registry is used when the application does not provide its own.
+ */
+@Component
+public class TravisMetrics {
+
+	/**
+	 * Outcome of a successful call.
+	 */
+	public static final String SUCCESS = "success";
+
+	/**
+	 * Outcome of a failed call.
+	 */
+	public static final String ERROR = "error";
+
+	@Autowired(required = false)
+	private MeterRegistry registry = Metrics.globalRegistry;
+
+	/**
+	 * A running entry point call, recorded on close as failed unless {@link #success()} has been called.
+	 */
+	public final class Span implements AutoCloseable {
+		private final String node;
+		private final String operation;
+		private final Timer.Sample sample;
+		private String outcome = ERROR;
+
+		private Span(final String node, final String operation) {
+			this.node = node;
+			this.operation = operation;
+			this.sample = Timer.start(registry);
+		}
+
+		/**
+		 * Mark this call as succeeded.
+		 */
+		public void success() {
+			outcome = SUCCESS;
+		}
+
+		@Override
+		public void close() {
+			sample.stop(Timer.builder("travis.operation").description("Travis plug-in entry points")
+					.tags("node", node, "operation", operation, "outcome", outcome).register(registry));
+		}
+	}
+
+	/**
+	 * Return the node tag of the given parameters.
+	 */
+	private static String toNode(final Map<String, String> parameters) {
+		return Objects.toString(parameters.get(TravisPluginResource.PARAMETER_URL), "none");
+	}
+
+	/**
+	 * Return the operation tag of a Travis request from its path.
+	 *
+	 * @param url The request URL.
+	 * @return The operation: <code>restart</code>, <code>log</code>, <code>builds</code>, <code>job</code>,
+	 *         <code>repo</code>, <code>repos</code>, <code>config</code> or <code>other</code>.
+	 */
+	static String toOperation(final String url) {
+		final var path = StringUtils.defaultString(URI.create(url).getPath());
+		if (path.endsWith("/restart")) {
+			return "restart";
+		}
+		if (path.endsWith("/log")) {
+			return "log";
+		}
+		if (path.contains("/builds") || path.contains("/build/")) {
+			return "builds";
+		}
+		if (path.contains("/jobs/")) {
+			return "job";
+		}
+		if (path.contains("/repos/") || path.contains("/repo/")) {
+			return "repo";
+		}
+		if (path.endsWith("/repos")) {
+			return "repos";
+		}
+		return path.endsWith("/config") ? "config" : "other";
+	}
+
+	/**
+	 * Return the status class tag of an HTTP status code.
+	 *
+	 * @param statusCode The status code, <code>0</code> without response.
+	 * @return The status class: <code>2xx</code>, <code>4xx</code>,... or <code>none</code>.
+	 */
+	static String toStatus(final int statusCode) {
+		return statusCode < 100 ? "none" : statusCode / 100 + "xx";
+	}
+
+	/**
+	 * Start the timer of an entry point call.
+	 *
+	 * @param parameters The node parameters.
+	 * @param operation  The entry point name.
+	 * @return The running call to close.
+	 */
+	public Span start(final Map<String, String> parameters, final String operation) {
+		return new Span(toNode(parameters), operation);
+	}
+
+	/**
+	 * Record a completed Travis request.
+	 *
+	 * @param node     The node API URL.
+	 * @param request  The completed request.
+	 * @param success  The processor outcome.
+	 * @param duration The request duration in nanoseconds, parse included.
+	 */
+	public void record(final String node, final TravisCurlRequest request, final boolean success,
+			final long duration) {
+		final var operation = toOperation(request.getUrl());
+		Timer.builder("travis.request").description("Travis API requests")
+				.tags("node", node, "operation", operation, "status", toStatus(request.getStatusCode()), "outcome",
+						success ? SUCCESS : ERROR)
+				.register(registry).record(duration, TimeUnit.NANOSECONDS);
+		if (request.getResponseSize() >= 0) {
+			DistributionSummary.builder("travis.response.size").description("Travis API response sizes")
+					.baseUnit("bytes").tags("node", node, "operation", operation).register(registry)
+					.record(request.getResponseSize());
+		}
+		if (request.getParseTime() > 0 && !request.isStreaming()) {
+			Timer.builder("travis.parse").description("Travis API response parse")
+					.tags("node", node, "operation", operation).register(registry)
+					.record(request.getParseTime(), TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Count a response cache lookup.
+	 *
+	 * @param parameters The node parameters.
+	 * @param result     The lookup result: <code>hit</code>, <code>miss</code>, <code>revalidated</code>,
+	 *                   <code>stale</code>, <code>coalesced</code> or <code>shared</code>.
+	 */
+	public void cache(final Map<String, String> parameters, final String result) {
+		Counter.builder("travis.cache").description("Travis response cache lookups")
+				.tags("node", toNode(parameters), "result", result).register(registry).increment();
+	}
+
+	/**
+	 * Return the registry of the meters.
+	 *
+	 * @return The registry.
+	 */
+	MeterRegistry getRegistry() {
+		return registry;
+	}
+}
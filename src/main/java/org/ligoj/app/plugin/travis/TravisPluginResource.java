@@ -1,35 +1,71 @@
 package org.ligoj.app.plugin.travis;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.PersistenceContext;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Strings;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.hc.core5.http.HttpStatus;
+import org.ligoj.app.api.SubscriptionMode;
 import org.ligoj.app.api.SubscriptionStatusWithData;
 import org.ligoj.app.plugin.build.BuildResource;
 import org.ligoj.app.plugin.build.BuildServicePlugin;
+import org.ligoj.app.plugin.travis.TravisRateLimiter.Priority;
+import org.ligoj.app.plugin.travis.dao.TravisJobStateRepository;
+import org.ligoj.app.resource.node.ParameterValueCreateVo;
 import org.ligoj.app.resource.plugin.AbstractToolPluginResource;
+import org.ligoj.app.resource.subscription.SubscriptionEditionVo;
 import org.ligoj.bootstrap.core.curl.CurlProcessor;
-import org.ligoj.bootstrap.core.curl.CurlRequest;
 import org.ligoj.bootstrap.core.resource.BusinessException;
 import org.ligoj.bootstrap.core.validation.ValidationJsonException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
-import tools.jackson.databind.node.ArrayNode;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.StreamSupport;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Travis CI resource.
@@ -37,6 +73,7 @@ import java.util.stream.StreamSupport;
 @Path(TravisPluginResource.URL)
 @Service
 @Produces(MediaType.APPLICATION_JSON)
+@Slf4j
 public class TravisPluginResource extends AbstractToolPluginResource implements BuildServicePlugin {
 
 	/**
@@ -49,6 +86,11 @@ public class TravisPluginResource extends AbstractToolPluginResource implements
 	 */
 	public static final String KEY = URL.replace('/', ':').substring(1);
 
+	/**
+	 * Error key of a call rejected while the Travis node is unhealthy.
+	 */
+	public static final String TRAVIS_UNAVAILABLE = "travis-unavailable";
+
 	/**
 	 * Travis username able to connect to instance.
 	 */
@@ -75,45 +117,111 @@ public class TravisPluginResource extends AbstractToolPluginResource implements
 	public static final String PARAMETER_URL = KEY + ":url-api";
 
 	/**
-	 * Travis code to status color. Default color is "red".
+	 * Travis API version of the node: <code>2</code>, the default, or <code>3</code>. With the API v3, the
+	 * repository, the builds and the restart use the v3 endpoints and request only the used attributes.
 	 */
-	private static final Map<String, String> CODE_TO_STATUS = new HashMap<>();
+	public static final String PARAMETER_API_VERSION = KEY + ":api-version";
 
-	static {
-		CODE_TO_STATUS.put("passed", "blue");
-		CODE_TO_STATUS.put("started", "yellow");
-	}
+	/**
+	 * Newline delimited JSON media type.
+	 */
+	public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+	/**
+	 * Maximal page size of a paginated search.
+	 */
+	private static final int MAX_PAGE_SIZE = 100;
+
+	/**
+	 * Amount of builds of a build listing page.
+	 */
+	private static final int BUILD_PAGE_SIZE = 25;
+
+	/**
+	 * API v3 repository query: the minimal representation with the description and the current build.
+	 */
+	private static final String V3_REPOSITORY = "?representation=minimal"
+			+ "&include=repository.description,repository.current_build";
 
 	/**
-	 * Return the color from the status of the job.
+	 * API v3 build listing query: the minimal representation with the commit time.
+	 */
+	private static final String V3_BUILDS = "?representation=minimal&include=build.commit&limit=" + BUILD_PAGE_SIZE;
+
+	/**
+	 * API v3 build query: the build with its jobs.
+	 */
+	private static final String V3_BUILD = "?include=build.jobs";
+
+	/**
+	 * Return the color from the status of the job. Default color is "red".
 	 *
 	 * @param status last status for the job
 	 * @return The color for the current status.
 	 */
-	private static String toStatus(final String status) {
-		return CODE_TO_STATUS.getOrDefault(status, "red");
+	static String toStatus(final String status) {
+		return switch (String.valueOf(status)) {
+		case "passed" -> "blue";
+		case "started" -> "yellow";
+		default -> "red";
+		};
 	}
 
+	@Autowired
+	protected TravisJobParser parser;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	protected TravisSearchIndex index;
+
+	@Autowired
+	protected TravisStatusStore statuses;
+
+	@Autowired
+	protected TravisStatusBroadcaster broadcaster;
+
+	@Autowired
+	protected TravisBuildQueue buildQueue;
+
+	@Autowired
+	protected TravisRateLimiter limiter;
+
+	@Autowired
+	protected TravisMetrics metrics;
+
+	@Autowired
+	protected TravisBuildStats stats;
+
+	@Autowired
+	protected TravisCircuitBreaker breaker;
+
+	@Autowired
+	protected TravisFanOut fanOut;
+
+	@Autowired
+	protected TravisRefresher refresher;
+
+	@Autowired
+	protected TravisJobStateStore jobStates;
+
+	@Autowired
+	private TravisJobStateRepository jobStateRepository;
+
+	@PersistenceContext
+	private EntityManager em;
+
 	/**
-	 * Transform the json content to an instance of <tt>Job</tt>.
-	 *
-	 * @param item JSON Content describing a job
-	 * @return Instance of <tt>Job</tt>
+	 * Running resource requests by cache key, shared by the concurrent identical lookups.
 	 */
-	private static Job transform(JsonNode item) {
-		Job result = new Job();
-		result.setName(item.get("slug").asString());
-		result.setDescription(item.get("description").asString());
-		final String statusNode = Objects.toString(item.get("last_build_state").asString(), "red");
-		result.setStatus(toStatus(statusNode));
-		result.setLastBuildId((item.get("last_build_id").asString(null)));
-		result.setBuilding("started".equals(statusNode));
-		result.setId(item.get("slug").asString());
-		return result;
-	}
+	private final Map<TravisResponseCache.Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
 
 	@Autowired
-	private ObjectMapper objectMapper;
+	protected TravisClientRegistry clients;
+
+	@Autowired
+	protected TravisResponseCache cache;
 
 	/**
 	 * Used to launch the job for the subscription.
@@ -127,18 +235,145 @@ public class TravisPluginResource extends AbstractToolPluginResource implements
 	public void build(@PathParam("subscription") final int subscription) throws URISyntaxException, IOException {
 		final Map<String, String> parameters = subscriptionResource.getParameters(subscription);
 
-		try {
-			// Check the instance is available
-			final Job job = validateJob(parameters);
-
-			if (job.getLastBuildId() == null || !build(parameters, job)) {
+		try (var span = metrics.start(parameters, "build")) {
+			if (!restart(parameters)) {
 				throw new BusinessException("Launching the job for the subscription {} failed.", subscription);
 			}
+			span.success();
 		} catch (ValidationJsonException e) {
 			throw new BusinessException("Launching the job for the subscription {} failed.", subscription);
 		}
 	}
 
+	/**
+	 * Queue the launch of the job of a subscription and return immediately. The outcome is available from
+	 * {@link #getBuildRequest(String)} and is sent as a <code>build</code> event to the listeners of this job. A
+	 * launch of the same job requested within a short window is merged with the previous one.
+	 *
+	 * @param subscription the subscription to use to locate the Travis instance.
+	 * @return The queued or merged request.
+	 */
+	@POST
+	@Path("build/{subscription:\\d+}/async")
+	public TravisBuildRequest buildAsync(@PathParam("subscription") final int subscription) {
+		final Map<String, String> parameters = subscriptionResource.getParameters(subscription);
+		final var job = parameters.get(PARAMETER_JOB);
+		final var key = broadcaster.toKey(parameters, job);
+		return buildQueue.submit(TravisClientRegistry.toKey(parameters), subscription, job, () -> restart(parameters),
+				r -> broadcaster.notify(key, TravisStatusBroadcaster.EVENT_BUILD, "build", r));
+	}
+
+	/**
+	 * Return an asynchronous launch request.
+	 *
+	 * @param id the request identifier.
+	 * @return The request and its outcome.
+	 */
+	@GET
+	@Path("build/request/{id}")
+	public TravisBuildRequest getBuildRequest(@PathParam("id") final String id) {
+		return Optional.ofNullable(buildQueue.get(id)).orElseThrow(() -> new EntityNotFoundException(id));
+	}
+
+	/**
+	 * Restart the last build of a job, then invalidate its cached status.
+	 *
+	 * @param parameters the subscription parameters.
+	 * @return <code>true</code> when the restart is accepted by Travis.
+	 * @throws URISyntaxException When the Travis URL is malformed.
+	 * @throws IOException        When Travis JSON configuration cannot be parsed.
+	 */
+	private boolean restart(final Map<String, String> parameters) throws URISyntaxException, IOException {
+		// Check the instance is available
+		return restart(parameters, validateJob(parameters));
+	}
+
+	/**
+	 * Restart the last build of a validated job, then invalidate its cached and refreshed status.
+	 */
+	private boolean restart(final Map<String, String> parameters, final Job job) {
+		if (job.getLastBuildId() == null || !build(parameters, job)) {
+			return false;
+		}
+
+		// The cached status of this job is now outdated
+		cache.invalidate(parameters, job.getId());
+		statuses.evict(parameters, job.getId());
+		refresher.invalidate(parameters);
+		return true;
+	}
+
+	/**
+	 * Restart the last build of the jobs of several subscriptions, and of all the Travis subscriptions of a project.
+	 * The jobs are validated and restarted concurrently, with a capped amount of concurrent calls per node. A job
+	 * shared by several subscriptions is restarted once. A failed restart does not abort the other ones.
+	 *
+	 * @param project       the optional project identifier whose Travis subscriptions are restarted.
+	 * @param subscriptions the optional subscription identifiers.
+	 * @return The outcome of each subscription.
+	 */
+	@POST
+	@Path("build")
+	@Consumes(MediaType.APPLICATION_JSON)
+	public List<JobRestart> buildAll(@QueryParam("project") final Integer project, final List<Integer> subscriptions) {
+		final Set<Integer> ids = new LinkedHashSet<>(Objects.requireNonNullElse(subscriptions, List.of()));
+		if (project != null) {
+			ids.addAll(em.createQuery("SELECT v.subscription.id FROM ParameterValue v WHERE v.parameter.id = :parameter"
+					+ " AND v.subscription.project.id = :project ORDER BY v.subscription.id", Integer.class)
+					.setParameter("parameter", PARAMETER_JOB).setParameter("project", project).getResultList());
+		}
+
+		// Group the subscriptions by job
+		final List<JobRestart> result = new ArrayList<>();
+		final Map<String, Map<String, String>> jobs = new LinkedHashMap<>();
+		final Map<String, List<JobRestart>> restarts = new HashMap<>();
+		for (final int id : ids) {
+			final var restart = new JobRestart();
+			restart.setSubscription(id);
+			result.add(restart);
+			try {
+				final Map<String, String> parameters = subscriptionResource.getParameters(id);
+				jobStates.bind(id, parameters);
+				restart.setJob(parameters.get(PARAMETER_JOB));
+				final var key = broadcaster.toKey(parameters, restart.getJob());
+				jobs.putIfAbsent(key, parameters);
+				restarts.computeIfAbsent(key, k -> new ArrayList<>()).add(restart);
+			} catch (final RuntimeException e) {
+				restart.setError("subscription");
+			}
+		}
+
+		// Restart each job once
+		final var keys = List.copyOf(jobs.keySet());
+		final Map<String, String> errors = new ConcurrentHashMap<>();
+		final var restarted = fanOut.invokeAll(keys, k -> TravisClientRegistry.toKey(jobs.get(k)), key -> {
+			final var parameters = jobs.get(key);
+			try (var span = metrics.start(parameters, "build")) {
+				final var job = validateJob(parameters);
+				if (!restart(parameters, job)) {
+					errors.put(key, "travis-restart");
+					return null;
+				}
+				span.success();
+				return job.getLastBuildId();
+			} catch (final ValidationJsonException e) {
+				errors.put(key, "travis-job");
+			} catch (final BusinessException e) {
+				errors.put(key, e.getMessage());
+			}
+			return null;
+		});
+		for (int i = 0; i < keys.size(); i++) {
+			final var key = keys.get(i);
+			final var build = restarted.get(i);
+			restarts.get(key).forEach(r -> {
+				r.setBuild(build);
+				r.setError(build == null ? errors.getOrDefault(key, TRAVIS_UNAVAILABLE) : null);
+			});
+		}
+		return result;
+	}
+
 	/**
 	 * Launch the job with the job.
 	 *
@@ -147,35 +382,360 @@ public class TravisPluginResource extends AbstractToolPluginResource implements
 	 * @return The result of the processing.
 	 */
 	protected boolean build(final Map<String, String> parameters, final Job job) {
-		final var processor = new TravisCurlProcessor(parameters);
-		try {
-			final String travisBaseUrl = parameters.get(PARAMETER_URL);
-			return processor.process(
-					new CurlRequest("POST", travisBaseUrl + "/builds/" + job.getLastBuildId() + "/restart", null));
-		} finally {
-			processor.close();
+		final String travisBaseUrl = parameters.get(PARAMETER_URL);
+		if (!isAvailable(parameters)) {
+			throw new BusinessException(TRAVIS_UNAVAILABLE, travisBaseUrl);
 		}
+		final var builds = isV3(parameters) ? "/build/" : "/builds/";
+		final var request = new TravisCurlRequest("POST", travisBaseUrl + builds + job.getLastBuildId() + "/restart",
+				null);
+		request.setV3(isV3(parameters));
+		return clients.execute(parameters, processor -> processor.process(request));
 	}
 
 	@Override
 	public boolean checkStatus(final Map<String, String> parameters) {
-		// Try to obtain the configuration
-		return getResource(parameters, "config") != null;
+		try (var span = metrics.start(parameters, "checkStatus")) {
+			// Try to obtain the configuration
+			final boolean result = getResource(parameters, "config") != null;
+			span.success();
+			return result;
+		}
 	}
 
 	@Override
 	public SubscriptionStatusWithData checkSubscriptionStatus(final Map<String, String> parameters) throws Exception {
-		final SubscriptionStatusWithData nodeStatusWithData = new SubscriptionStatusWithData();
-		nodeStatusWithData.put("job", validateJob(parameters));
-		return nodeStatusWithData;
+		try (var span = metrics.start(parameters, "checkSubscriptionStatus")) {
+			final SubscriptionStatusWithData nodeStatusWithData = new SubscriptionStatusWithData();
+			nodeStatusWithData.put("job", getStatus(parameters, Priority.INTERACTIVE));
+
+			// Trends are only read from the local store, ingested by the stats endpoint
+			nodeStatusWithData.put("stats", stats.get(stats.toKey(parameters, parameters.get(PARAMETER_JOB))));
+			span.success();
+			return nodeStatusWithData;
+		}
+	}
+
+	/**
+	 * Return the status of a job. The status pushed by the webhook is preferred, then the status refreshed in the
+	 * background, then the state restored at startup. Polling is only the fallback. A job without refreshed status
+	 * is then refreshed in the background.
+	 *
+	 * @param parameters the subscription parameters.
+	 * @param priority   the request priority when the job is polled.
+	 * @return The job status.
+	 * @throws URISyntaxException When the Travis URL is malformed.
+	 * @throws IOException        When Travis JSON configuration cannot be parsed.
+	 */
+	private Job getStatus(final Map<String, String> parameters, final Priority priority)
+			throws URISyntaxException, IOException {
+		final var job = statuses.get(parameters, parameters.get(PARAMETER_JOB));
+		if (job != null) {
+			return job;
+		}
+		final var refreshed = refresher.get(parameters);
+		if (refreshed != null) {
+			return refreshed;
+		}
+		refresher.register(parameters);
+		final var restored = jobStates.get(parameters);
+		if (restored != null) {
+			return restored;
+		}
+		return validateJob(parameters, priority);
+	}
+
+	/**
+	 * Start the background refresh of the subscribed jobs, and restore their persisted states.
+	 */
+	@PostConstruct
+	public void startRefresh() {
+		refresher.schedule(this::findAllJobParameters, parameters -> validateJob(parameters, Priority.BACKGROUND));
+		jobStates.schedule(this::restore);
+	}
+
+	/**
+	 * Return the parameters of all the subscriptions to a Travis job.
+	 */
+	private List<Map<String, String>> findAllJobParameters() {
+		final List<Map<String, String>> result = new ArrayList<>();
+		em.createQuery("SELECT v.subscription.id FROM ParameterValue v WHERE v.parameter.id = :parameter",
+				Integer.class).setParameter("parameter", PARAMETER_JOB).getResultList().forEach(id -> {
+					final var parameters = subscriptionResource.getParametersNoCheck(id);
+					jobStates.bind(id, parameters);
+					result.add(parameters);
+				});
+		return result;
+	}
+
+	/**
+	 * Cache a restored job state, so its first fetch is a conditional request.
+	 */
+	private void restore(final Map<String, String> parameters, final TravisJobStateStore.State state) {
+		try {
+			cache.restore(cache.toKey(parameters, toJobResource(parameters)), state.job(), state.etag(),
+					state.fetched());
+		} catch (final MalformedURLException | URISyntaxException e) {
+			log.info("Invalid Travis job {}: {}", parameters.get(PARAMETER_JOB), e.getMessage());
+		}
+	}
+
+	/**
+	 * Stream the status changes of the jobs of several subscriptions as Server-Sent Events. Each event named
+	 * <code>status</code> holds the subscription identifier and its job. The current status is sent first, then
+	 * only the changes. The unknown, not visible and not Travis subscriptions are ignored, and the sink is closed when
+	 * none remains.
+	 *
+	 * @param subscriptions the subscription identifiers to watch.
+	 * @param sink          the SSE sink.
+	 * @param sse           the SSE context.
+	 */
+	@GET
+	@Path("events")
+	@Produces(MediaType.SERVER_SENT_EVENTS)
+	public void events(@QueryParam("subscription") final List<Integer> subscriptions,
+			@Context final SseEventSink sink, @Context final Sse sse) {
+		boolean registered = false;
+		for (final int subscription : new HashSet<>(subscriptions)) {
+			final Map<String, String> parameters;
+			try {
+				parameters = subscriptionResource.getParameters(subscription);
+			} catch (final EntityNotFoundException e) {
+				log.info("Ignored Travis status watch of subscription {}: {}", subscription, e.getMessage());
+				continue;
+			}
+			if (parameters.get(PARAMETER_JOB) == null) {
+				// Not a Travis subscription
+				continue;
+			}
+			jobStates.bind(subscription, parameters);
+			broadcaster.register(broadcaster.toKey(parameters, parameters.get(PARAMETER_JOB)), subscription,
+					() -> getStatus(parameters, Priority.BACKGROUND), sink, sse);
+			registered = true;
+		}
+		if (!registered) {
+			sink.close();
+		}
+	}
+
+	/**
+	 * Receive a Travis build notification. The payload signature is verified with the public key exposed by the
+	 * Travis configuration of the node, then the notified status is stored.
+	 *
+	 * @param node      the node receiving the notification.
+	 * @param payload   the JSON notification payload.
+	 * @param signature the Base64 encoded SHA1withRSA signature of the payload.
+	 * @throws GeneralSecurityException When the public key cannot be used.
+	 * @throws ValidationJsonException  When the signed payload has no repository or no state.
+	 */
+	@POST
+	@Path("webhook/{node}")
+	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+	public void webhook(@PathParam("node") final String node, @FormParam("payload") final String payload,
+			@HeaderParam("Signature") final String signature) throws GeneralSecurityException {
+		final Map<String, String> parameters = pvResource.getNodeParameters(node);
+		if (payload == null || signature == null || !verify(parameters, payload, signature)) {
+			throw new ForbiddenException("Invalid Travis notification signature");
+		}
+		final var job = parser.parseNotification(payload);
+		if (job == null) {
+			throw new ValidationJsonException("payload", "travis-notification", payload);
+		}
+		statuses.put(parameters, job);
+		index.merge(TravisClientRegistry.toKey(parameters), job);
+		broadcaster.publish(broadcaster.toKey(parameters, job.getId()), job);
+	}
+
+	/**
+	 * Verify the signature of a notification payload.
+	 *
+	 * @param parameters the node parameters.
+	 * @param payload    the JSON notification payload.
+	 * @param signature  the Base64 encoded signature.
+	 * @return <code>true</code> when the signature matches the public key of the node.
+	 * @throws GeneralSecurityException When the public key cannot be used.
+	 */
+	private boolean verify(final Map<String, String> parameters, final String payload, final String signature)
+			throws GeneralSecurityException {
+		final var config = getResource(parameters, "config");
+		if (config == null) {
+			return false;
+		}
+		final var pem = objectMapper.readTree(config).path("config").path("notifications").path("webhook")
+				.path("public_key").asString("");
+		if (pem.isEmpty()) {
+			return false;
+		}
+		final var key = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(Base64.getMimeDecoder()
+				.decode(pem.replaceAll("-----(BEGIN|END) PUBLIC KEY-----", "").replaceAll("\\s", ""))));
+		final var verifier = Signature.getInstance("SHA1withRSA");
+		verifier.initVerify(key);
+		verifier.update(payload.getBytes(StandardCharsets.UTF_8));
+		try {
+			return verifier.verify(Base64.getDecoder().decode(signature));
+		} catch (final IllegalArgumentException | SignatureException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Return the status of the jobs of several subscriptions. Subscriptions are grouped by Travis node and API token,
+	 * then the jobs sharing the same owner are fetched with a single listing, and the remaining ones are fetched
+	 * concurrently.
+	 *
+	 * @param subscriptions The subscription identifiers.
+	 * @return The jobs by subscription identifier. Subscriptions that are unknown, not visible, or whose job cannot be
+	 *         resolved are not in the result.
+	 */
+	@POST
+	@Path("status")
+	@Consumes(MediaType.APPLICATION_JSON)
+	public Map<Integer, Job> getStatuses(final List<Integer> subscriptions) {
+		final Map<Integer, Map<String, String>> parameters = new LinkedHashMap<>();
+		for (final int subscription : new LinkedHashSet<>(subscriptions)) {
+			try {
+				final Map<String, String> subscriptionParameters = subscriptionResource.getParameters(subscription);
+				if (subscriptionParameters.get(PARAMETER_JOB) != null) {
+					parameters.put(subscription, subscriptionParameters);
+				}
+			} catch (final EntityNotFoundException e) {
+				log.info("Ignored Travis status of subscription {}: {}", subscription, e.getMessage());
+			}
+		}
+		parameters.forEach(jobStates::bind);
+		final Map<Integer, Job> result = new ConcurrentHashMap<>();
+		parameters.entrySet().stream()
+				.collect(Collectors.groupingBy(e -> Objects.toString(e.getValue().get(PARAMETER_URL)) + "|"
+						+ Objects.toString(e.getValue().get(PARAMETER_TOKEN))))
+				.values().forEach(g -> result.putAll(getStatuses(g.stream().collect(
+						Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get(PARAMETER_JOB))), g.getFirst().getValue())));
+		return result;
+	}
+
+	/**
+	 * Return the status of the jobs of several subscriptions in a compact columnar form, sized for the large project
+	 * lists. The full {@link Job} is still available with the subscription status.
+	 *
+	 * @param subscriptions The subscription identifiers.
+	 * @return The status columns, ordered by subscription identifier. Subscriptions whose job cannot be resolved are
+	 *         not in the result.
+	 */
+	@POST
+	@Path("status/compact")
+	@Consumes(MediaType.APPLICATION_JSON)
+	public JobStatuses getCompactStatuses(final List<Integer> subscriptions) {
+		final var jobs = new TreeMap<>(getStatuses(subscriptions));
+		final Map<String, Integer> slugs = new LinkedHashMap<>();
+		final var result = new JobStatuses();
+		result.setSubscriptions(new int[jobs.size()]);
+		result.setJob(new int[jobs.size()]);
+		result.setStatus(new byte[jobs.size()]);
+		int i = 0;
+		for (final var entry : jobs.entrySet()) {
+			result.getSubscriptions()[i] = entry.getKey();
+			result.getJob()[i] = slugs.computeIfAbsent(entry.getValue().getId(), k -> slugs.size());
+			result.getStatus()[i++] = JobStatuses.toCode(entry.getValue());
+		}
+		result.setJobs(slugs.keySet().toArray(String[]::new));
+		return result;
+	}
+
+	/**
+	 * Return the status of the given jobs hosted by the same Travis node.
+	 *
+	 * @param jobs       The job names by subscription identifier.
+	 * @param parameters The node parameters shared by all these jobs.
+	 * @return The jobs by subscription identifier.
+	 */
+	private Map<Integer, Job> getStatuses(final Map<Integer, String> jobs, final Map<String, String> parameters) {
+		final Map<String, Job> slugs = new HashMap<>();
+
+		// Owners having several jobs are fetched with a single listing
+		jobs.values().stream().distinct().collect(Collectors.groupingBy(j -> StringUtils.substringBefore(j, "/")))
+				.entrySet().stream().filter(e -> e.getValue().size() > 1)
+				.forEach(e -> findAllByOwner(parameters, e.getKey()).stream()
+						.filter(j -> e.getValue().contains(j.getId())).forEach(j -> slugs.put(j.getId(), j)));
+
+		// The other jobs are fetched one by one
+		final List<String> remaining = jobs.values().stream().distinct().filter(j -> !slugs.containsKey(j)).toList();
+		slugs.putAll(findAllBySlug(parameters, remaining));
+
+		final Map<Integer, Job> result = new HashMap<>();
+		jobs.forEach((subscription, slug) -> {
+			if (slugs.containsKey(slug)) {
+				result.put(subscription, slugs.get(slug));
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Return the jobs of the given owner.
+	 *
+	 * @param parameters The node parameters.
+	 * @param owner      The owner name.
+	 * @return The jobs of this owner. Empty when the owner is not found.
+	 */
+	private List<Job> findAllByOwner(final Map<String, String> parameters, final String owner) {
+		try {
+			return Objects.requireNonNullElse(getResource(parameters, "repos?owner_name=" + owner, parser::parseRepos),
+					List.of());
+		} catch (final BusinessException e) {
+			// The jobs of this owner are fetched one by one
+			return List.of();
+		}
+	}
+
+	/**
+	 * Return the jobs matching to the given slugs, fetched concurrently with virtual threads.
+	 *
+	 * @param parameters The node parameters.
+	 * @param slugs      The job names.
+	 * @return The resolved jobs by slug. Unresolved jobs are ignored.
+	 */
+	private Map<String, Job> findAllBySlug(final Map<String, String> parameters, final Collection<String> slugs) {
+		final var node = TravisClientRegistry.toKey(parameters);
+		final Map<String, Job> result = new HashMap<>();
+		fanOut.invokeAll(slugs, s -> node, slug -> {
+			final Map<String, String> jobParameters = new HashMap<>(parameters);
+			jobParameters.put(PARAMETER_JOB, slug);
+			return getStatus(jobParameters, Priority.INTERACTIVE);
+		}).stream().filter(Objects::nonNull).forEach(job -> result.put(job.getId(), job));
+		return result;
 	}
 
 	private String encode(final String job) throws MalformedURLException, URISyntaxException {
 		return new URI("http", job, "").toURL().getPath();
 	}
 
+	/**
+	 * Indicates the node is used through the API v3.
+	 */
+	private static boolean isV3(final Map<String, String> parameters) {
+		return "3".equals(StringUtils.trim(parameters.get(PARAMETER_API_VERSION)));
+	}
+
+	/**
+	 * Return the repository resource of the job for the API version of the node. With the API v3, the slug is a
+	 * single encoded path segment.
+	 */
+	private String toRepository(final Map<String, String> parameters)
+			throws MalformedURLException, URISyntaxException {
+		final var job = parameters.get(PARAMETER_JOB);
+		return isV3(parameters) ? "/repo/" + URLEncoder.encode(job, StandardCharsets.UTF_8) : "/repos/" + encode(job);
+	}
+
+	/**
+	 * Return the resource describing the job for the API version of the node.
+	 */
+	private String toJobResource(final Map<String, String> parameters)
+			throws MalformedURLException, URISyntaxException {
+		return toRepository(parameters) + (isV3(parameters) ? V3_REPOSITORY : "");
+	}
+
 	/**
 	 * Search the Travis's jobs matching to the given criteria. Name, display name and description are considered.
+	 * The search is answered by the local index of the node once loaded, unless this index is empty or truncated.
 	 *
 	 * @param node     the node to be tested with given parameters.
 	 * @param criteria the search criteria.
@@ -193,19 +753,239 @@ public class TravisPluginResource extends AbstractToolPluginResource implements
 	 *
 	 * @param node     the node to be tested with given parameters.
 	 * @param criteria the search criteria.
-	 * @param view     The optional view URL.
+	 * @param view     The optional view URL. When set, the search is not answered by the index covering all the
+	 *                 repositories.
 	 * @return job names matching the criteria.
 	 */
 	private List<Job> findAllByName(final String node, final String criteria, final String view) {
 		final Map<String, String> parameters = pvResource.getNodeParameters(node);
+		try (var span = metrics.start(parameters, "findAllByName")) {
+			if (view == null) {
+				final var key = TravisClientRegistry.toKey(parameters);
+				final var indexed = index.find(key, criteria, 10);
+				if (indexed != null && !indexed.isEmpty()) {
+					span.success();
+					return indexed;
+				}
+
+				// Not yet or not fully indexed node, or a repository created since the last build: load the index in
+				// the background and get the jobs from Travis
+				index.load(key, offset -> findIndexPage(parameters, offset));
+			}
+			final String url = StringUtils.trimToEmpty(view) + "repos?search=" + criteria + "&orderBy=name&limit=10";
+			final var result = Objects.requireNonNullElse(getResource(parameters, url, parser::parseRepos),
+					List.<Job>of());
+			if (view == null) {
+				index.add(TravisClientRegistry.toKey(parameters), result);
+			}
+			span.success();
+			return result;
+		}
+	}
 
-		// Get the jobs and parse them
-		final String url = StringUtils.trimToEmpty(view) + "repos?search=" + criteria + "&orderBy=name&limit=10";
-		final InputStream jobsAsInput = IOUtils.toInputStream(
-				Objects.toString(getResource(parameters, url), "{\"repos\":[]}"), StandardCharsets.UTF_8);
-		final JsonNode jsonNode = objectMapper.readTree(jobsAsInput);
-		final ArrayNode jobsNode = (ArrayNode) jsonNode.get("repos");
-		return StreamSupport.stream(jobsNode.spliterator(), false).map(TravisPluginResource::transform).toList();
+	/**
+	 * Search the Travis's jobs matching to the given criteria, walking the Travis pagination. Jobs are streamed as
+	 * newline delimited JSON as soon as a page is received, while the next page is fetched in the background.
+	 *
+	 * @param node     the node to be tested with given parameters.
+	 * @param criteria the search criteria.
+	 * @param pageSize the amount of jobs requested per page, up to 100.
+	 * @param max      the maximal amount of returned jobs. The search stops once reached.
+	 * @return The streamed jobs matching the criteria.
+	 */
+	@GET
+	@Path("{node}/search/{criteria}")
+	@Produces(APPLICATION_NDJSON)
+	public StreamingOutput findAllByNameStream(@PathParam("node") final String node,
+			@PathParam("criteria") final String criteria,
+			@QueryParam("page-size") @DefaultValue("25") final int pageSize,
+			@QueryParam("max") @DefaultValue("100") final int max) {
+		final Map<String, String> parameters = pvResource.getNodeParameters(node);
+		final int size = Math.clamp(pageSize, 1, MAX_PAGE_SIZE);
+		return output -> {
+			final var executor = Executors.newVirtualThreadPerTaskExecutor();
+			try {
+				Future<List<Job>> next = executor
+						.submit(() -> findPage(parameters, "search=" + criteria, 0, size, Priority.INTERACTIVE));
+				int count = 0;
+				for (int offset = size; count < max; offset += size) {
+					final var page = next.get();
+					if (page.size() == size && count + size < max) {
+						// Prefetch the next page while this one is written
+						final int nextOffset = offset;
+						next = executor.submit(() -> findPage(parameters, "search=" + criteria, nextOffset, size,
+								Priority.INTERACTIVE));
+					}
+					for (final var job : page.subList(0, Math.min(page.size(), max - count))) {
+						output.write(objectMapper.writeValueAsBytes(job));
+						output.write('\n');
+					}
+					output.flush();
+					count += page.size();
+					if (page.size() < size) {
+						// Last page
+						break;
+					}
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (final ExecutionException e) {
+				throw new IOException("Unable to search the Travis jobs", e.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		};
+	}
+
+	/**
+	 * Return a page of the Travis's jobs matching to the given filter. The pages are not cached.
+	 *
+	 * @param parameters the node parameters.
+	 * @param filter     the listing filter, such as <code>search=criteria</code>.
+	 * @param offset     the amount of jobs to skip.
+	 * @param size       the page size.
+	 * @param priority   the request priority.
+	 * @return The jobs of this page.
+	 */
+	private List<Job> findPage(final Map<String, String> parameters, final String filter, final int offset,
+			final int size, final Priority priority) {
+		final String url = "repos?" + filter + "&orderBy=name&limit=" + size + "&offset=" + offset;
+		return Objects.requireNonNullElse(clients.execute(parameters,
+				processor -> getResource(processor, parameters, url, parser::parseRepos, null, null, priority, false)),
+				List.of());
+	}
+
+	/**
+	 * Return a page of the indexed jobs: the repositories the user of the token is a member of, as the ones found by
+	 * the remote search.
+	 *
+	 * @param parameters the node parameters.
+	 * @param offset     the amount of jobs to skip.
+	 * @return The jobs of this page.
+	 */
+	private List<Job> findIndexPage(final Map<String, String> parameters, final int offset) {
+		final var login = getResource(parameters, "users", parser::parseUser, Priority.BACKGROUND);
+		if (login == null) {
+			throw new IllegalStateException("Unable to get the Travis user of the token");
+		}
+		return findPage(parameters, "member=" + login, offset, TravisSearchIndex.PAGE_SIZE, Priority.BACKGROUND);
+	}
+
+	/**
+	 * Rebuild the local search index of a node in the background.
+	 *
+	 * @param node the node to index.
+	 */
+	@POST
+	@Path("{node}/index")
+	public void rebuildIndex(@PathParam("node") final String node) {
+		final Map<String, String> parameters = pvResource.getNodeParameters(node);
+		final var key = TravisClientRegistry.toKey(parameters);
+		if (!index.rebuild(key)) {
+			index.load(key, offset -> findIndexPage(parameters, offset));
+		}
+	}
+
+	/**
+	 * Create the subscriptions of projects to Travis jobs hosted by a node. The distinct jobs are first validated
+	 * concurrently, sharing the client and the cached lookups of the node. Then a subscription is created for each
+	 * valid row. A failed row does not abort the other ones.
+	 *
+	 * @param node the node hosting the jobs.
+	 * @param rows the projects and their job.
+	 * @return The given rows completed with their subscription or their error.
+	 */
+	@POST
+	@Path("{node}/import")
+	@Consumes(MediaType.APPLICATION_JSON)
+	public List<JobImport> importJobs(@PathParam("node") final String node, final List<JobImport> rows) {
+		final Map<String, String> parameters = pvResource.getNodeParameters(node);
+		try (var span = metrics.start(parameters, "import")) {
+			// Validate the distinct jobs at once
+			final var key = TravisClientRegistry.toKey(parameters);
+			final var slugs = rows.stream().map(JobImport::getJob).filter(StringUtils::isNotBlank).distinct().toList();
+			final Map<String, String> errors = new ConcurrentHashMap<>();
+			final var jobs = fanOut.invokeAll(slugs, s -> key, slug -> {
+				final Map<String, String> jobParameters = new HashMap<>(parameters);
+				jobParameters.put(PARAMETER_JOB, slug);
+				try {
+					return validateJob(jobParameters);
+				} catch (final ValidationJsonException e) {
+					errors.put(slug, "travis-job");
+				} catch (final BusinessException e) {
+					errors.put(slug, e.getMessage());
+				}
+				return null;
+			});
+			final Set<String> valid = new HashSet<>();
+			for (int i = 0; i < slugs.size(); i++) {
+				if (jobs.get(i) != null) {
+					valid.add(slugs.get(i));
+				}
+			}
+
+			// Create the subscriptions of the valid rows
+			rows.forEach(row -> {
+				if (StringUtils.isBlank(row.getJob())) {
+					row.setError("travis-job");
+				} else if (row.getProject() == null) {
+					row.setError("project");
+				} else if (valid.contains(row.getJob())) {
+					create(node, row);
+				} else {
+					row.setError(errors.getOrDefault(row.getJob(), TRAVIS_UNAVAILABLE));
+				}
+			});
+			span.success();
+			return rows;
+		}
+	}
+
+	/**
+	 * Create the subscriptions of projects to Travis jobs hosted by a node, from CSV rows. Each row holds the project
+	 * identifier and the job, separated by a semicolon or a comma. A leading header row is ignored.
+	 *
+	 * @param node the node hosting the jobs.
+	 * @param csv  the CSV rows.
+	 * @return The parsed rows completed with their subscription or their error.
+	 * @see #importJobs(String, List)
+	 */
+	@POST
+	@Path("{node}/import")
+	@Consumes("text/csv")
+	public List<JobImport> importJobsCsv(@PathParam("node") final String node, final String csv) {
+		final List<JobImport> rows = new ArrayList<>();
+		csv.lines().map(String::trim).filter(StringUtils::isNotEmpty).forEach(line -> {
+			final var cells = line.split("[;,]", 2);
+			final var row = new JobImport();
+			row.setProject(NumberUtils.isDigits(cells[0].trim()) ? Integer.valueOf(cells[0].trim()) : null);
+			row.setJob(cells.length > 1 ? StringUtils.trimToNull(cells[1]) : null);
+			if (!rows.isEmpty() || row.getProject() != null) {
+				rows.add(row);
+			}
+		});
+		return importJobs(node, rows);
+	}
+
+	/**
+	 * Create the subscription of an import row linked to a validated job, the job lookup is cached.
+	 */
+	private void create(final String node, final JobImport row) {
+		final var parameter = new ParameterValueCreateVo();
+		parameter.setParameter(PARAMETER_JOB);
+		parameter.setText(row.getJob());
+		final var vo = new SubscriptionEditionVo();
+		vo.setNode(node);
+		vo.setProject(row.getProject());
+		vo.setMode(SubscriptionMode.LINK);
+		vo.setParameters(List.of(parameter));
+		try {
+			row.setSubscription(subscriptionResource.create(vo));
+		} catch (final Exception e) {
+			log.info("Unable to import the Travis job {} in project {}: {}", row.getJob(), row.getProject(),
+					e.getMessage());
+			row.setError(StringUtils.defaultIfBlank(e.getMessage(), e.getClass().getSimpleName()));
+		}
 	}
 
 	/**
@@ -225,7 +1005,174 @@ public class TravisPluginResource extends AbstractToolPluginResource implements
 		// Prepare the context, an ordered set of jobs
 		final Map<String, String> parameters = pvResource.getNodeParameters(node);
 		parameters.put(PARAMETER_JOB, id);
-		return validateJob(parameters);
+		try (var span = metrics.start(parameters, "findById")) {
+			final var result = validateJob(parameters);
+			span.success();
+			return result;
+		}
+	}
+
+	/**
+	 * Return the recent builds of the job of a subscription, the most recent first.
+	 *
+	 * @param subscription the subscription to use to locate the Travis instance.
+	 * @return The recent builds without their jobs.
+	 * @throws URISyntaxException When the Travis URL is malformed.
+	 * @throws IOException        When Travis JSON configuration cannot be parsed.
+	 */
+	@GET
+	@Path("{subscription:\\d+}/builds")
+	public List<Build> findBuilds(@PathParam("subscription") final int subscription)
+			throws URISyntaxException, IOException {
+		final Map<String, String> parameters = subscriptionResource.getParameters(subscription);
+		final var resource = toRepository(parameters) + "/builds" + (isV3(parameters) ? V3_BUILDS : "");
+		return Objects.requireNonNullElse(
+				getResource(parameters, resource, parser::parseBuilds, Priority.INTERACTIVE, isV3(parameters)),
+				List.of());
+	}
+
+	/**
+	 * Return a build of the job of a subscription with its jobs.
+	 *
+	 * @param subscription the subscription to use to locate the Travis instance.
+	 * @param build        the build identifier.
+	 * @return The build with its jobs.
+	 * @throws URISyntaxException When the Travis URL is malformed.
+	 * @throws IOException        When Travis JSON configuration cannot be parsed.
+	 */
+	@GET
+	@Path("{subscription:\\d+}/builds/{build:\\d+}")
+	public Build findBuild(@PathParam("subscription") final int subscription, @PathParam("build") final long build)
+			throws URISyntaxException, IOException {
+		final Map<String, String> parameters = subscriptionResource.getParameters(subscription);
+		if (isV3(parameters)) {
+			// The build must belong to the repository of this subscription
+			return Optional
+					.ofNullable(getResource(parameters, "/build/" + build + V3_BUILD, parser::parseBuild,
+							Priority.INTERACTIVE, true))
+					.filter(b -> parameters.get(PARAMETER_JOB).equalsIgnoreCase(b.getRepositorySlug()))
+					.orElseThrow(() -> new EntityNotFoundException(String.valueOf(build)));
+		}
+		final var resource = "/repos/" + encode(parameters.get(PARAMETER_JOB)) + "/builds/" + build;
+		return Optional.ofNullable(getResource(parameters, resource, parser::parseBuildDetails))
+				.orElseThrow(() -> new EntityNotFoundException(String.valueOf(build)));
+	}
+
+	/**
+	 * Return the build trends of the job of a subscription: median and 95th percentile duration, pass rate and median
+	 * commit to start delay over the last 7, 30 and 90 days. The trends are computed from the local build store. A job never
+	 * ingested is ingested first, a stale one is refreshed in the background.
+	 *
+	 * @param subscription the subscription to use to locate the Travis instance.
+	 * @return The aggregates by window in days.
+	 */
+	@GET
+	@Path("{subscription:\\d+}/stats")
+	public Map<String, TravisBuildStats.Window> getStats(@PathParam("subscription") final int subscription) {
+		final Map<String, String> parameters = subscriptionResource.getParameters(subscription);
+		final var key = stats.toKey(parameters, parameters.get(PARAMETER_JOB));
+		final var result = stats.get(key);
+		if (result == null) {
+			return stats.ingest(key, newBuildLoader(parameters, Priority.INTERACTIVE));
+		}
+		stats.refresh(key, newBuildLoader(parameters, Priority.BACKGROUND));
+		return result;
+	}
+
+	/**
+	 * Return the loader of the build pages of the job of a subscription. The loader takes the build number to start
+	 * after. The API v3 has no such filter, the pages are requested by offset, in the same order.
+	 */
+	private Function<String, List<Build>> newBuildLoader(final Map<String, String> parameters,
+			final Priority priority) {
+		final String resource;
+		try {
+			resource = toRepository(parameters) + "/builds";
+		} catch (final MalformedURLException | URISyntaxException e) {
+			throw new IllegalArgumentException(e);
+		}
+		if (isV3(parameters)) {
+			final int[] offset = { 0 };
+			return afterNumber -> {
+				offset[0] = afterNumber == null ? 0 : offset[0] + BUILD_PAGE_SIZE;
+				return getResource(parameters, resource + V3_BUILDS + "&offset=" + offset[0], parser::parseBuilds,
+						priority, true);
+			};
+		}
+		return afterNumber -> getResource(parameters,
+				afterNumber == null ? resource : resource + "?after_number=" + afterNumber, parser::parseBuilds,
+				priority);
+	}
+
+	/**
+	 * Stream the log of a job of the subscription's repository as plain text, starting from the given offset. The
+	 * log is passed through as it is received and is never held in memory. To follow a running job, the client
+	 * requests again with the previous offset increased by the amount of received bytes: only the new bytes are
+	 * then requested to Travis with a <code>Range</code> header.
+	 * The log is streamed within the stream cap of the node, so the open logs do not hold the permits of the other
+	 * Travis calls.
+	 *
+	 * @param subscription the subscription to use to locate the Travis instance.
+	 * @param job          the job identifier.
+	 * @param offset       the amount of log bytes already received.
+	 * @return The log bytes from the offset.
+	 * @throws URISyntaxException When the Travis URL is malformed.
+	 * @throws IOException        When Travis JSON configuration cannot be parsed.
+	 */
+	@GET
+	@Path("{subscription:\\d+}/jobs/{job:\\d+}/log")
+	@Produces(MediaType.TEXT_PLAIN)
+	public StreamingOutput getLog(@PathParam("subscription") final int subscription, @PathParam("job") final long job,
+			@QueryParam("offset") final long offset) throws URISyntaxException, IOException {
+		final Map<String, String> parameters = subscriptionResource.getParameters(subscription);
+
+		// The job must belong to the repository of this subscription
+		final var buildJob = getResource(parameters, "/jobs/" + job, parser::parseJob);
+		if (buildJob == null || !parameters.get(PARAMETER_JOB).equalsIgnoreCase(buildJob.getRepositorySlug())) {
+			throw new EntityNotFoundException(String.valueOf(job));
+		}
+		final var url = Strings.CS.appendIfMissing(parameters.get(PARAMETER_URL), "/") + "jobs/" + job + "/log";
+		return output -> {
+			final var request = new TravisCurlRequest("GET", url, null);
+			request.getHeaders().put("Accept", MediaType.TEXT_PLAIN);
+			request.setStreaming(true);
+			if (offset > 0) {
+				request.getHeaders().put("Range", "bytes=" + offset + "-");
+			}
+			request.setParser(input -> copyLog(request, input, output, offset));
+			clients.stream(parameters, processor -> processor.process(request));
+			if (request.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+				throw new EntityNotFoundException(String.valueOf(job));
+			}
+			// 416 means there is no new byte since the offset
+			if (request.getResult() == null
+					&& request.getStatusCode() != HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+				throw new IOException("Unable to get the Travis log of job " + job + ", status "
+						+ request.getStatusCode());
+			}
+		};
+	}
+
+	/**
+	 * Copy the log from the Travis response to the client, flushing each received chunk. When the range is ignored
+	 * by Travis, the already received bytes are skipped.
+	 *
+	 * @return The amount of copied bytes.
+	 */
+	private long copyLog(final TravisCurlRequest request, final InputStream input, final OutputStream output,
+			final long offset) throws IOException {
+		if (offset > 0 && request.getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT) {
+			IOUtils.skip(input, offset);
+		}
+		final var buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+		long count = 0;
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			output.write(buffer, 0, read);
+			output.flush();
+			count += read;
+		}
+		return count;
 	}
 
 	@Override
@@ -234,15 +1181,182 @@ public class TravisPluginResource extends AbstractToolPluginResource implements
 	}
 
 	/**
-	 * Return a Travis's resource. Return <code>null</code> when the resource is not found.
+	 * Return a Travis's resource. Return <code>null</code> when the resource is not found. When a cached entry is
+	 * provided, the request is conditional and the cached entry is returned when the resource is not modified. The
+	 * result is not cached when there is no cache key. A server error without cached entry is reported as an
+	 * unavailable node, not as a missing resource.
 	 */
-	private String getResource(final CurlProcessor processor, final String url, final String resource) {
+	@SuppressWarnings("unchecked")
+	private <T> T getResource(final CurlProcessor processor, final Map<String, String> parameters,
+			final String resource, final TravisResponseParser<T> parser, final TravisResponseCache.Key key,
+			final TravisResponseCache.Entry cached, final Priority priority, final boolean v3) {
 		// Get the resource using the preempted authentication
-		final CurlRequest request = new CurlRequest("GET", Strings.CS.appendIfMissing(url, "/") + resource, null);
-		request.setSaveResponse(true);
+		final var url = Strings.CS.appendIfMissing(parameters.get(PARAMETER_URL), "/");
+		final var request = new TravisCurlRequest("GET", url + resource, null);
+		request.setParser(parser);
+		request.setPriority(priority);
+		request.setV3(v3);
+		if (cached != null) {
+			if (cached.getEtag() != null) {
+				request.getHeaders().put("If-None-Match", cached.getEtag());
+			}
+			if (cached.getLastModified() != null) {
+				request.getHeaders().put("If-Modified-Since", cached.getLastModified());
+			}
+		}
 		processor.process(request);
+		if (cached != null && request.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+			metrics.cache(parameters, "revalidated");
+			cache.touch(key, cached);
+			return (T) cached.getValue();
+		}
+		if (cached != null && (request.getStatusCode() == 0 || request.getStatusCode() >= 500)) {
+			// Unhealthy node, serve the last known content
+			metrics.cache(parameters, "stale");
+			return toStale(cached);
+		}
+		if (request.getStatusCode() >= 500) {
+			throw new BusinessException(TRAVIS_UNAVAILABLE, parameters.get(PARAMETER_URL));
+		}
 		// TODO Handle 403 response with ligoj-api 1.1.9+
-		return request.getResponse();
+		final var result = (T) request.getResult();
+		if (key != null && result != null && request.getStatusCode() == HttpStatus.SC_OK) {
+			cache.put(key, result, request.getResponseHeader("ETag"), request.getResponseHeader("Last-Modified"));
+		}
+		return result;
+	}
+
+	/**
+	 * Return a parsed Travis's resource. Return <code>null</code> when the resource is not found. A fresh cached
+	 * resource is returned without request. The response is parsed from the response stream.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param resource   The Travis resource.
+	 * @param parser     The response parser. A resource path must always be parsed with the same parser.
+	 * @param <T>        The parsed type.
+	 * @return The parsed resource content.
+	 */
+	protected <T> T getResource(final Map<String, String> parameters, final String resource,
+			final TravisResponseParser<T> parser) {
+		return getResource(parameters, resource, parser, Priority.INTERACTIVE);
+	}
+
+	/**
+	 * Return a parsed Travis's resource with the given priority. Return <code>null</code> when the resource is not
+	 * found. The concurrent lookups of the same resource wait for the running request and share its parsed result.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param resource   The Travis resource.
+	 * @param parser     The response parser. A resource path must always be parsed with the same parser.
+	 * @param priority   The request priority.
+	 * @param <T>        The parsed type.
+	 * @return The parsed resource content.
+	 */
+	protected <T> T getResource(final Map<String, String> parameters, final String resource,
+			final TravisResponseParser<T> parser, final Priority priority) {
+		return getResource(parameters, resource, parser, priority, false);
+	}
+
+	/**
+	 * Return a parsed Travis's resource with the given priority and API version.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param resource   The Travis resource.
+	 * @param parser     The response parser. A resource path must always be parsed with the same parser.
+	 * @param priority   The request priority.
+	 * @param v3         <code>true</code> when the resource is an API v3 endpoint.
+	 * @param <T>        The parsed type.
+	 * @return The parsed resource content.
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> T getResource(final Map<String, String> parameters, final String resource,
+			final TravisResponseParser<T> parser, final Priority priority, final boolean v3) {
+		final var key = cache.toKey(parameters, resource);
+		final var cached = cache.get(key);
+		if (cache.isFresh(cached)) {
+			metrics.cache(parameters, "hit");
+			return (T) cached.getValue();
+		}
+		if (!isAvailable(parameters)) {
+			if (cached == null) {
+				throw new BusinessException(TRAVIS_UNAVAILABLE, parameters.get(PARAMETER_URL));
+			}
+			metrics.cache(parameters, "stale");
+			return toStale(cached);
+		}
+
+		// Concurrent identical lookups share the same request
+		final var flight = new CompletableFuture<Object>();
+		final var running = inFlight.putIfAbsent(key, flight);
+		if (running != null) {
+			metrics.cache(parameters, "coalesced");
+			try {
+				return (T) running.join();
+			} catch (final CompletionException e) {
+				throw e.getCause() instanceof RuntimeException cause ? cause : e;
+			}
+		}
+		try {
+			// Another Ligoj node may be fetching the same resource
+			final var shared = cache.await(key, cached);
+			if (shared != null) {
+				metrics.cache(parameters, "shared");
+				flight.complete(shared.getValue());
+				return (T) shared.getValue();
+			}
+			metrics.cache(parameters, "miss");
+			try {
+				final T result = clients.execute(parameters,
+						processor -> getResource(processor, parameters, resource, parser, key, cached, priority, v3));
+				flight.complete(result);
+				return result;
+			} finally {
+				cache.release(key);
+			}
+		} catch (final RuntimeException e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			// The waiting lookups are released whatever the failure, an Error included
+			flight.completeExceptionally(new IllegalStateException("Unable to get the Travis resource " + resource));
+			inFlight.remove(key, flight);
+		}
+	}
+
+	/**
+	 * Return the last known content of a resource. A job is marked as stale.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T toStale(final TravisResponseCache.Entry cached) {
+		if (cached.getValue() instanceof Job job) {
+			final var result = new Job();
+			result.setId(job.getId());
+			result.setName(job.getName());
+			result.setDescription(job.getDescription());
+			result.setStatus(job.getStatus());
+			result.setBuilding(job.isBuilding());
+			result.setLastBuildId(job.getLastBuildId());
+			result.setLastBuildFinishedAt(job.getLastBuildFinishedAt());
+			result.setStale(true);
+			return (T) result;
+		}
+		return (T) cached.getValue();
+	}
+
+	/**
+	 * Indicates the Travis node can be called. An open circuit is probed with the cheap <code>config</code> resource
+	 * once its open delay is elapsed.
+	 *
+	 * @param parameters The node parameters.
+	 * @return <code>true</code> when the node can be called.
+	 */
+	private boolean isAvailable(final Map<String, String> parameters) {
+		return breaker.allow(TravisClientRegistry.toKey(parameters), () -> clients.execute(parameters, processor -> {
+			final var request = new TravisCurlRequest("GET",
+					Strings.CS.appendIfMissing(parameters.get(PARAMETER_URL), "/") + "config", null);
+			processor.process(request);
+			return request.getStatusCode() == HttpStatus.SC_OK;
+		}));
 	}
 
 	/**
@@ -253,14 +1367,40 @@ public class TravisPluginResource extends AbstractToolPluginResource implements
 	 * @return The resource content.
 	 */
 	protected String getResource(final Map<String, String> parameters, final String resource) {
-		return getResource(new TravisCurlProcessor(parameters), parameters.get(PARAMETER_URL), resource);
+		return getResource(parameters, resource, input -> IOUtils.toString(input, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Return the metrics of the shared Travis clients, of the search indexes, of the rate limits, of the circuit
+	 * breakers, of the fan-outs, of the background refresh and of the persisted job states.
+	 *
+	 * @return The metrics by component.
+	 */
+	@GET
+	@Path("metrics")
+	public Map<String, Object> getMetrics() {
+		return Map.of("pool", clients.getMetrics(), "index", index.getMetrics(), "rate", limiter.getMetrics(),
+				"breaker", breaker.getMetrics(), "fanout", fanOut.getMetrics(), "refresh", refresher.getMetrics(),
+				"state", jobStates.getMetrics());
+	}
+
+	@Override
+	public void delete(final int subscription, final boolean remoteData) {
+		final var parameters = subscriptionResource.getParametersNoCheck(subscription);
+		statuses.evict(parameters, parameters.get(PARAMETER_JOB));
+		jobStates.unbind(subscription);
+		jobStateRepository.deleteAllBy("subscription.id", subscription);
 	}
 
 	@Override
 	public void link(final int subscription) throws Exception {
 		final Map<String, String> parameters = subscriptionResource.getParameters(subscription);
-		// Validate the job settings
-		validateJob(parameters);
+		jobStates.bind(subscription, parameters);
+		try (var span = metrics.start(parameters, "link")) {
+			// Validate the job settings
+			validateJob(parameters);
+			span.success();
+		}
 	}
 
 	/**
@@ -272,18 +1412,39 @@ public class TravisPluginResource extends AbstractToolPluginResource implements
 	 * @throws IOException        When Travis JSON configuration cannot be parsed.
 	 */
 	protected Job validateJob(final Map<String, String> parameters) throws URISyntaxException, IOException {
+		return validateJob(parameters, Priority.INTERACTIVE);
+	}
+
+	/**
+	 * Validate the administration connectivity with the given priority.
+	 *
+	 * @param parameters the administration parameters.
+	 * @param priority   the request priority.
+	 * @return job name.
+	 * @throws URISyntaxException When the Travis URL is malformed.
+	 * @throws IOException        When Travis JSON configuration cannot be parsed.
+	 */
+	protected Job validateJob(final Map<String, String> parameters, final Priority priority)
+			throws URISyntaxException, IOException {
 		// Get job's configuration
 		final String job = parameters.get(PARAMETER_JOB);
-		String jobJson = getResource(parameters, "/repos/" + encode(job));
-		if (jobJson == null) {
+		final var resource = toJobResource(parameters);
+		final TravisResponseParser<Job> jobParser = isV3(parameters) ? parser::parseRepository : parser::parseRepo;
+		final Job result = getResource(parameters, resource, jobParser, priority, isV3(parameters));
+		if (result == null) {
 			// Invalid couple PKEY and id
 			throw new ValidationJsonException(PARAMETER_JOB, "travis-job", job);
 		}
+		index.update(TravisClientRegistry.toKey(parameters), result);
+		if (!result.isStale()) {
+			// The fresh state replaces the persisted one
+			final var cached = cache.get(cache.toKey(parameters, resource));
+			jobStates.put(parameters, result, cached == null ? null : cached.getEtag(),
+					cached == null ? System.currentTimeMillis() : cached.getFetched());
+		}
 
-		final JsonNode node = objectMapper.readTree(jobJson);
-
-		// Retrieve description, status and display name
-		return transform(node.get("repo"));
+		// Description, status and display name are retrieved
+		return result;
 	}
 
 }
@@ -0,0 +1,265 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.hc.core5.http.HttpStatus;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Token bucket scheduler of the outbound Travis requests, one bucket per API URL and token. The budget is also
+ * aligned on the rate limit headers returned by Travis. Interactive requests are served before the background ones,
+ * and a part of the budget is reserved to them. A throttled response blocks the bucket until the rate limit reset.
+ */
+@Component
+@Slf4j
+public class TravisRateLimiter {
+
+	/**
+	 * Request priority.
+	 */
+	public enum Priority {
+		/**
+		 * User action waiting for the response.
+		 */
+		INTERACTIVE,
+
+		/**
+		 * Background refresh or index rebuild.
+		 */
+		BACKGROUND
+	}
+
+	/**
+	 * Configuration key of the maximal amount of requests per minute and per token.
+	 */
+	public static final String CONF_RATE = TravisPluginResource.KEY + ":rate-limit";
+
+	/**
+	 * Configuration key of the burst capacity of the bucket.
+	 */
+	public static final String CONF_BURST = TravisPluginResource.KEY + ":rate-limit-burst";
+
+	/**
+	 * Configuration key of the maximal time, in seconds, an interactive request waits for a throttled bucket before
+	 * a retry is given up.
+	 */
+	public static final String CONF_WAIT = TravisPluginResource.KEY + ":rate-limit-wait";
+
+	/**
+	 * Default maximal amount of requests per minute.
+	 */
+	private static final int DEFAULT_RATE = 600;
+
+	/**
+	 * Default burst capacity.
+	 */
+	private static final int DEFAULT_BURST = 50;
+
+	/**
+	 * Default maximal wait of an interactive request, in seconds.
+	 */
+	private static final int DEFAULT_WAIT = 10;
+
+	/**
+	 * Maximal wait of a background request, in seconds.
+	 */
+	private static final int BACKGROUND_WAIT = 60;
+
+	/**
+	 * Part of the burst capacity reserved to the interactive requests.
+	 */
+	private static final double INTERACTIVE_RESERVE = 0.2;
+
+	/**
+	 * Default back-off of a throttled response without reset hint, in milliseconds.
+	 */
+	private static final long DEFAULT_BACKOFF = 5000;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+	/**
+	 * The budget of a token.
+	 */
+	private static class Bucket {
+		private double tokens;
+		private long refilled = System.currentTimeMillis();
+		private long blockedUntil;
+		private final int[] waiting = new int[Priority.values().length];
+		private long waits;
+		private long waitTime;
+		private long maxWaitTime;
+		private long throttled;
+
+		private Bucket(final int burst) {
+			this.tokens = burst;
+		}
+	}
+
+	private Bucket getBucket(final String key) {
+		return buckets.computeIfAbsent(key, k -> new Bucket(configuration.get(CONF_BURST, DEFAULT_BURST)));
+	}
+
+	/**
+	 * Wait for a token of the bucket.
+	 *
+	 * @param key      The API URL and token hash.
+	 * @param priority The request priority.
+	 * @throws IllegalStateException When interrupted while waiting, no token is then taken.
+	 */
+	public void acquire(final String key, final Priority priority) {
+		final var bucket = getBucket(key);
+		final int rate = configuration.get(CONF_RATE, DEFAULT_RATE);
+		final int burst = configuration.get(CONF_BURST, DEFAULT_BURST);
+		final long start = System.currentTimeMillis();
+		synchronized (bucket) {
+			bucket.waiting[priority.ordinal()]++;
+			try {
+				long wait;
+				while ((wait = getWait(bucket, priority, rate, burst)) > 0) {
+					bucket.wait(wait);
+				}
+				bucket.tokens--;
+			} catch (final InterruptedException e) {
+				// The request must not be sent without a token
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for a Travis rate limit token", e);
+			} finally {
+				bucket.waiting[priority.ordinal()]--;
+				final long waitTime = System.currentTimeMillis() - start;
+				bucket.waits++;
+				bucket.waitTime += waitTime;
+				bucket.maxWaitTime = Math.max(bucket.maxWaitTime, waitTime);
+				bucket.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Take a token of the bucket when one is available without waiting.
+	 *
+	 * @param key      The API URL and token hash.
+	 * @param priority The request priority.
+	 * @return <code>true</code> when a token has been taken, <code>false</code> when the request has to wait for it.
+	 */
+	public boolean tryAcquire(final String key, final Priority priority) {
+		final var bucket = getBucket(key);
+		final int rate = configuration.get(CONF_RATE, DEFAULT_RATE);
+		final int burst = configuration.get(CONF_BURST, DEFAULT_BURST);
+		synchronized (bucket) {
+			if (getWait(bucket, priority, rate, burst) > 0) {
+				return false;
+			}
+			bucket.tokens--;
+			bucket.waits++;
+			return true;
+		}
+	}
+
+	/**
+	 * Refill the bucket and return the time to wait before the next try, <code>0</code> when a token is available.
+	 */
+	private long getWait(final Bucket bucket, final Priority priority, final int rate, final int burst) {
+		final long now = System.currentTimeMillis();
+		bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.refilled) * rate / 60000d);
+		bucket.refilled = now;
+		if (bucket.blockedUntil > now) {
+			return bucket.blockedUntil - now;
+		}
+		final double required = priority == Priority.INTERACTIVE ? 1 : 1 + burst * INTERACTIVE_RESERVE;
+		if (priority == Priority.BACKGROUND && bucket.waiting[Priority.INTERACTIVE.ordinal()] > 0) {
+			// Interactive requests first
+			return 100;
+		}
+		if (bucket.tokens >= required) {
+			return 0;
+		}
+		return Math.max(1, (long) Math.ceil((required - bucket.tokens) * 60000d / rate));
+	}
+
+	/**
+	 * Update the budget from the response rate limit headers, and block the bucket on a throttled response.
+	 *
+	 * @param key      The API URL and token hash.
+	 * @param request  The completed request.
+	 * @param priority The request priority.
+	 * @return <code>true</code> when the request has been throttled and can be retried after the bucket unblocking.
+	 */
+	public boolean update(final String key, final TravisCurlRequest request, final Priority priority) {
+		final var bucket = getBucket(key);
+		final var remaining = request.getResponseHeader("X-RateLimit-Remaining");
+		final boolean throttled = request.getStatusCode() == HttpStatus.SC_TOO_MANY_REQUESTS
+				|| request.getStatusCode() == HttpStatus.SC_FORBIDDEN && "0".equals(remaining);
+		final long now = System.currentTimeMillis();
+		synchronized (bucket) {
+			if (remaining != null) {
+				bucket.tokens = Math.min(bucket.tokens, NumberUtils.toDouble(remaining, bucket.tokens));
+			}
+			if (!throttled) {
+				return false;
+			}
+			bucket.throttled++;
+			bucket.tokens = 0;
+			bucket.blockedUntil = Math.max(bucket.blockedUntil, now + getBackoff(request, now));
+			bucket.notifyAll();
+			final long maxWait = TimeUnit.SECONDS.toMillis(
+					priority == Priority.INTERACTIVE ? configuration.get(CONF_WAIT, DEFAULT_WAIT) : BACKGROUND_WAIT);
+			log.info("Travis rate limit reached for {}, blocked for {}ms", key.substring(0, key.lastIndexOf('|')),
+					bucket.blockedUntil - now);
+			return bucket.blockedUntil - now <= maxWait;
+		}
+	}
+
+	/**
+	 * Return the back-off of a throttled response from the <code>Retry-After</code> or
+	 * <code>X-RateLimit-Reset</code> headers.
+	 */
+	private long getBackoff(final TravisCurlRequest request, final long now) {
+		final long retryAfter = NumberUtils.toLong(request.getResponseHeader("Retry-After"), -1);
+		if (retryAfter >= 0) {
+			return TimeUnit.SECONDS.toMillis(retryAfter);
+		}
+		final long reset = NumberUtils.toLong(request.getResponseHeader("X-RateLimit-Reset"), -1);
+		if (reset > 0) {
+			return Math.max(0, TimeUnit.SECONDS.toMillis(reset) - now);
+		}
+		return DEFAULT_BACKOFF;
+	}
+
+	/**
+	 * Return the rate limit metrics.
+	 *
+	 * @return The metrics by API URL and token hash prefix: current budget, waiting requests by priority, average
+	 *         and maximal wait time in milliseconds, and amount of throttled responses.
+	 */
+	public Map<String, Object> getMetrics() {
+		final Map<String, Object> result = new TreeMap<>();
+		buckets.forEach((key, bucket) -> {
+			synchronized (bucket) {
+				result.put(key.substring(0, key.length() - 56), Map.of("budget", (int) bucket.tokens, "interactive",
+						bucket.waiting[Priority.INTERACTIVE.ordinal()], "background",
+						bucket.waiting[Priority.BACKGROUND.ordinal()], "wait",
+						bucket.waits == 0 ? 0 : bucket.waitTime / bucket.waits, "maxWait", bucket.maxWaitTime,
+						"throttled", bucket.throttled));
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Reset all the budgets.
+	 */
+	public void clear() {
+		buckets.clear();
+	}
+}
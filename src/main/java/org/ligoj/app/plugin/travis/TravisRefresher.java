@@ -0,0 +1,383 @@
+package org.ligoj.app.plugin.travis;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Background refresher keeping warm the status of the subscribed Travis jobs. Each job is polled at its own
+ * interval: fast while building, then slower as the job stays idle, one poll per {@value #IDLE_RATIO}th of the idle
+ * duration. The polls are spread with a random jitter, and the polls of all the nodes are capped per minute. The
+ * refreshed statuses are served while they are younger than their interval.
+ */
+@Component
+@Slf4j
+public class TravisRefresher {
+
+	/**
+	 * Configuration key of the maximal amount of polls per minute, all nodes included. <code>0</code> disables the
+	 * refresh.
+	 */
+	public static final String CONF_REFRESH_RATE = TravisPluginResource.KEY + ":refresh-rate";
+
+	/**
+	 * Configuration key of the poll interval, in seconds, of a building job.
+	 */
+	public static final String CONF_REFRESH_BUILDING = TravisPluginResource.KEY + ":refresh-building";
+
+	/**
+	 * Configuration key of the shortest poll interval, in seconds, of a job not building.
+	 */
+	public static final String CONF_REFRESH = TravisPluginResource.KEY + ":refresh";
+
+	/**
+	 * Configuration key of the longest poll interval, in seconds, of an idle job.
+	 */
+	public static final String CONF_REFRESH_IDLE = TravisPluginResource.KEY + ":refresh-idle";
+
+	/**
+	 * Default maximal amount of polls per minute.
+	 */
+	private static final int DEFAULT_REFRESH_RATE = 60;
+
+	/**
+	 * Default poll interval of a building job, in seconds.
+	 */
+	private static final int DEFAULT_REFRESH_BUILDING = 30;
+
+	/**
+	 * Default shortest poll interval, in seconds.
+	 */
+	private static final int DEFAULT_REFRESH = 300;
+
+	/**
+	 * Default longest poll interval, in seconds.
+	 */
+	private static final int DEFAULT_REFRESH_IDLE = 3600;
+
+	/**
+	 * Ratio between the idle duration of a job and its poll interval: a job idle for a week is polled every hour.
+	 */
+	static final int IDLE_RATIO = 168;
+
+	/**
+	 * Relative jitter applied to each interval.
+	 */
+	private static final double JITTER = 0.2;
+
+	/**
+	 * Delay, in minutes, between two reloads of the subscribed jobs.
+	 */
+	private static final int SEED_PERIOD = 10;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	/**
+	 * Refreshed jobs by node API URL, token hash and slug.
+	 */
+	private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+	private final AtomicLong polls = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong throttled = new AtomicLong();
+
+	private ScheduledExecutorService scheduler;
+
+	private ExecutorService pollers;
+
+	/**
+	 * Available polls, only used by the scheduler thread.
+	 */
+	private double tokens;
+
+	private Supplier<Collection<Map<String, String>>> seed;
+
+	private TravisFanOut.Task<Map<String, String>, Job> poller;
+
+	/**
+	 * A refreshed job.
+	 */
+	private static class Target {
+		private final Map<String, String> parameters;
+		private volatile Job job;
+		private volatile long refreshed;
+		private volatile long changed;
+		private volatile long interval;
+		private volatile long due;
+		private volatile boolean polling;
+
+		/**
+		 * When <code>true</code>, the due poll has been delayed by the rate cap.
+		 */
+		private volatile boolean deferred;
+
+		private Target(final Map<String, String> parameters, final long interval, final long due) {
+			this.parameters = parameters;
+			this.interval = interval;
+			this.due = due;
+		}
+	}
+
+	/**
+	 * Start the scheduler.
+	 */
+	@PostConstruct
+	public void start() {
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			final var thread = new Thread(r, "travis-refresher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		pollers = Executors.newVirtualThreadPerTaskExecutor();
+	}
+
+	/**
+	 * Stop the refresh.
+	 */
+	@PreDestroy
+	public void stop() {
+		scheduler.shutdownNow();
+		pollers.shutdownNow();
+	}
+
+	/**
+	 * Start the refresh of the subscribed jobs.
+	 *
+	 * @param seed   The parameters of all the subscribed jobs, reloaded periodically.
+	 * @param poller The status poller of a job.
+	 */
+	public void schedule(final Supplier<Collection<Map<String, String>>> seed,
+			final TravisFanOut.Task<Map<String, String>, Job> poller) {
+		this.seed = seed;
+		this.poller = poller;
+		scheduler.scheduleWithFixedDelay(this::seed, 1, SEED_PERIOD, TimeUnit.MINUTES);
+		scheduler.scheduleWithFixedDelay(this::tick, 1, 1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Return the target key of a job.
+	 */
+	private String toKey(final Map<String, String> parameters) {
+		return TravisClientRegistry.toKey(parameters) + "|" + parameters.get(TravisPluginResource.PARAMETER_JOB);
+	}
+
+	/**
+	 * Reload the subscribed jobs: the new ones are polled within the shortest interval, the unsubscribed ones are
+	 * dropped.
+	 */
+	void seed() {
+		try {
+			final Set<String> keys = new HashSet<>();
+			final long interval = getSeconds(CONF_REFRESH, DEFAULT_REFRESH);
+			seed.get().forEach(p -> keys.add(register(p, ThreadLocalRandom.current().nextLong(interval + 1))));
+			targets.keySet().retainAll(keys);
+		} catch (final RuntimeException e) {
+			log.info("Unable to load the subscribed Travis jobs: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Register a job to refresh. A registered job is left unchanged.
+	 *
+	 * @param parameters The subscription parameters.
+	 */
+	public void register(final Map<String, String> parameters) {
+		register(parameters, jitter(getSeconds(CONF_REFRESH, DEFAULT_REFRESH)));
+	}
+
+	private String register(final Map<String, String> parameters, final long delay) {
+		final var key = toKey(parameters);
+		final long interval = getSeconds(CONF_REFRESH, DEFAULT_REFRESH);
+		targets.computeIfAbsent(key,
+				k -> new Target(new HashMap<>(parameters), interval, System.currentTimeMillis() + delay));
+		return key;
+	}
+
+	/**
+	 * Forget the refreshed status of a job, and poll it at once.
+	 *
+	 * @param parameters The subscription parameters.
+	 */
+	public void invalidate(final Map<String, String> parameters) {
+		final var target = targets.get(toKey(parameters));
+		if (target != null) {
+			target.job = null;
+			target.due = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Return the refreshed status of a job.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @return The status refreshed within its interval. <code>null</code> when the job is not yet refreshed or when
+	 *         its refresh is late.
+	 */
+	public Job get(final Map<String, String> parameters) {
+		final var target = targets.get(toKey(parameters));
+		if (target == null || target.job == null
+				|| System.currentTimeMillis() - target.refreshed > target.interval * (1 + JITTER)) {
+			return null;
+		}
+		return target.job;
+	}
+
+	/**
+	 * Start the polls of the due jobs within the remaining budget, the most late first.
+	 */
+	void tick() {
+		final int rate = configuration.get(CONF_REFRESH_RATE, DEFAULT_REFRESH_RATE);
+		if (rate <= 0 || poller == null) {
+			return;
+		}
+		// The budget is refilled each second, and is kept for 5 seconds at most
+		tokens = Math.min(tokens + rate / 60d, Math.max(1, rate / 12d));
+		final long now = System.currentTimeMillis();
+		final var due = targets.values().stream().filter(t -> !t.polling && t.due <= now)
+				.sorted(Comparator.comparingLong(t -> t.due)).toList();
+		int started = 0;
+		for (; started < due.size() && tokens >= 1; started++) {
+			final var target = due.get(started);
+			tokens--;
+			target.polling = true;
+			target.deferred = false;
+			pollers.execute(() -> poll(target, System.currentTimeMillis()));
+		}
+
+		// A delayed poll is counted once, whatever the amount of ticks it waits for
+		due.subList(started, due.size()).stream().filter(t -> !t.deferred).forEach(t -> {
+			t.deferred = true;
+			throttled.incrementAndGet();
+		});
+	}
+
+	/**
+	 * Poll a registered job now.
+	 *
+	 * @param key The target key.
+	 */
+	void poll(final String key) {
+		final var target = targets.get(key);
+		if (target != null) {
+			target.polling = true;
+			poll(target, System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Poll a job and schedule its next poll.
+	 */
+	private void poll(final Target target, final long now) {
+		try {
+			update(target, poller.call(target.parameters), now);
+			polls.incrementAndGet();
+		} catch (final Exception e) {
+			failures.incrementAndGet();
+			log.info("Unable to refresh the Travis job {}: {}",
+					target.parameters.get(TravisPluginResource.PARAMETER_JOB), e.getMessage());
+			target.due = System.currentTimeMillis() + jitter(target.interval);
+		} finally {
+			target.polling = false;
+		}
+	}
+
+	/**
+	 * Save a polled status and compute the next poll time.
+	 */
+	private void update(final Target target, final Job job, final long now) {
+		final var last = target.job;
+		if (last == null || !Objects.equals(last.getStatus(), job.getStatus()) || last.isBuilding() != job.isBuilding()
+				|| !Objects.equals(last.getLastBuildId(), job.getLastBuildId())) {
+			target.changed = now;
+		}
+		target.job = job;
+		target.refreshed = now;
+		target.interval = toInterval(job, Math.max(target.changed, toMillis(job.getLastBuildFinishedAt())), now);
+		target.due = now + jitter(target.interval);
+	}
+
+	/**
+	 * Return the poll interval of a job.
+	 *
+	 * @param job        The polled status.
+	 * @param lastActive The time of the last known activity.
+	 * @param now        The current time.
+	 * @return The poll interval in milliseconds.
+	 */
+	long toInterval(final Job job, final long lastActive, final long now) {
+		if (job.isBuilding()) {
+			return getSeconds(CONF_REFRESH_BUILDING, DEFAULT_REFRESH_BUILDING);
+		}
+		return Math.clamp((now - lastActive) / IDLE_RATIO, getSeconds(CONF_REFRESH, DEFAULT_REFRESH),
+				getSeconds(CONF_REFRESH_IDLE, DEFAULT_REFRESH_IDLE));
+	}
+
+	/**
+	 * Return a configured duration in milliseconds.
+	 */
+	private long getSeconds(final String name, final int defaultValue) {
+		return TimeUnit.SECONDS.toMillis(configuration.get(name, defaultValue));
+	}
+
+	/**
+	 * Return the given delay with a random jitter.
+	 */
+	private static long jitter(final long delay) {
+		return (long) (delay * (1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER)));
+	}
+
+	/**
+	 * Return the epoch milliseconds of an ISO instant, <code>0</code> when not available.
+	 */
+	private static long toMillis(final String instant) {
+		if (instant == null) {
+			return 0;
+		}
+		try {
+			return Instant.parse(instant).toEpochMilli();
+		} catch (final DateTimeParseException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Return the refresh metrics.
+	 *
+	 * @return The amount of refreshed jobs, of running polls, of completed and failed polls, and of polls delayed by
+	 *         the rate cap.
+	 */
+	public Map<String, Object> getMetrics() {
+		return Map.of("jobs", targets.size(), "polling", targets.values().stream().filter(t -> t.polling).count(),
+				"polls", polls.get(), "failures", failures.get(), "throttled", throttled.get());
+	}
+
+	/**
+	 * Drop all the refreshed jobs.
+	 */
+	public void clear() {
+		targets.clear();
+	}
+}
@@ -0,0 +1,318 @@
+package org.ligoj.app.plugin.travis;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Bounded cache of the parsed Travis resources, keyed by node API URL, token hash and resource path. Entries are
+ * served without any request during their time to live, then revalidated with a conditional request using their
+ * <code>ETag</code> and <code>Last-Modified</code> validators. This in-process cache is the first level, the second
+ * level is a {@link TravisSharedCache} shared by the Ligoj nodes of a cluster: an entry fetched by a node is served
+ * to the others, a single node fetches a resource at a time, and the invalidations are spread to all the nodes.
+ */
+@Component
+public class TravisResponseCache {
+
+	/**
+	 * Configuration key of the maximal amount of cached resources.
+	 */
+	public static final String CONF_CACHE_SIZE = TravisPluginResource.KEY + ":cache-size";
+
+	/**
+	 * Configuration key of the time to live, in seconds, of a cached resource before its revalidation.
+	 */
+	public static final String CONF_CACHE_TTL = TravisPluginResource.KEY + ":cache-ttl";
+
+	/**
+	 * Configuration key of the shared cache implementation name: <code>local</code> or <code>database</code>.
+	 */
+	public static final String CONF_SHARED_CACHE = TravisPluginResource.KEY + ":shared-cache";
+
+	/**
+	 * Configuration key of the duration, in seconds, of the fetch lease of a shared resource.
+	 */
+	public static final String CONF_SHARED_LEASE = TravisPluginResource.KEY + ":shared-lease";
+
+	/**
+	 * Default maximal amount of cached resources.
+	 */
+	private static final int DEFAULT_CACHE_SIZE = 1000;
+
+	/**
+	 * Default time to live, in seconds.
+	 */
+	private static final int DEFAULT_CACHE_TTL = 30;
+
+	/**
+	 * Default fetch lease duration, in seconds.
+	 */
+	private static final int DEFAULT_SHARED_LEASE = 10;
+
+	/**
+	 * Delay, in milliseconds, between two lookups of a resource fetched by another node.
+	 */
+	private static final long SHARED_WAIT = 50;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@Autowired
+	private List<TravisSharedCache> sharedCaches;
+
+	/**
+	 * Cached entries, the least recently used first.
+	 */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+			return size() > configuration.get(CONF_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+		}
+	};
+
+	/**
+	 * The cache key of a resource.
+	 *
+	 * @param node     The API URL and token hash.
+	 * @param resource The resource path.
+	 */
+	public record Key(String node, String resource) {
+	}
+
+	/**
+	 * A cached resource with its validators.
+	 */
+	@Getter
+	@AllArgsConstructor
+	public static class Entry {
+		private final Object value;
+		private final String etag;
+		private final String lastModified;
+		private final long fetched;
+
+		/**
+		 * Indicates this entry can be served without revalidation.
+		 *
+		 * @param ttl The time to live in seconds.
+		 * @return <code>true</code> when this entry is younger than the time to live.
+		 */
+		public boolean isFresh(final int ttl) {
+			return System.currentTimeMillis() - fetched < ttl * 1000L;
+		}
+	}
+
+	/**
+	 * Listen the invalidations published by the other Ligoj nodes.
+	 */
+	@PostConstruct
+	public void start() {
+		sharedCaches.forEach(s -> s.subscribe(this::evict));
+	}
+
+	/**
+	 * Return the configured shared cache, the in-process one by default.
+	 */
+	private TravisSharedCache getShared() {
+		final var name = configuration.get(CONF_SHARED_CACHE, TravisLocalCache.NAME);
+		return sharedCaches.stream().filter(s -> s.getName().equals(name)).findFirst()
+				.orElseGet(() -> sharedCaches.stream().filter(s -> TravisLocalCache.NAME.equals(s.getName()))
+						.findFirst().orElseThrow());
+	}
+
+	/**
+	 * Return the cache key of a resource.
+	 *
+	 * @param parameters The node parameters.
+	 * @param resource   The resource path.
+	 * @return The cache key.
+	 */
+	public Key toKey(final Map<String, String> parameters, final String resource) {
+		return new Key(TravisClientRegistry.toKey(parameters), resource);
+	}
+
+	/**
+	 * Return the cached entry. When the entry is not fresh, the shared entry is used if more recent.
+	 *
+	 * @param key The cache key.
+	 * @return The cached entry, fresh or not. <code>null</code> when not cached.
+	 */
+	public Entry get(final Key key) {
+		final Entry local;
+		synchronized (this) {
+			local = entries.get(key);
+		}
+		if (isFresh(local)) {
+			return local;
+		}
+		final var shared = getShared().get(key);
+		if (shared != null && (local == null || shared.getFetched() > local.getFetched())) {
+			synchronized (this) {
+				entries.put(key, shared);
+			}
+			return shared;
+		}
+		return local;
+	}
+
+	/**
+	 * Indicates the given entry can be served without revalidation.
+	 *
+	 * @param entry The cached entry. May be <code>null</code>.
+	 * @return <code>true</code> when the entry is fresh.
+	 */
+	public boolean isFresh(final Entry entry) {
+		return entry != null && entry.isFresh(configuration.get(CONF_CACHE_TTL, DEFAULT_CACHE_TTL));
+	}
+
+	/**
+	 * Cache a resource.
+	 *
+	 * @param key          The cache key.
+	 * @param value        The parsed resource content.
+	 * @param etag         The optional <code>ETag</code> validator.
+	 * @param lastModified The optional <code>Last-Modified</code> validator.
+	 */
+	public void put(final Key key, final Object value, final String etag, final String lastModified) {
+		final var entry = new Entry(value, etag, lastModified, System.currentTimeMillis());
+		synchronized (this) {
+			entries.put(key, entry);
+		}
+		getShared().put(key, entry);
+	}
+
+	/**
+	 * Cache a resource restored from a previous fetch, unless already cached. The entry is revalidated once its time
+	 * to live is elapsed since the original fetch.
+	 *
+	 * @param key     The cache key.
+	 * @param value   The parsed resource content.
+	 * @param etag    The optional <code>ETag</code> validator.
+	 * @param fetched The original fetch time in milliseconds since the epoch.
+	 */
+	public synchronized void restore(final Key key, final Object value, final String etag, final long fetched) {
+		entries.putIfAbsent(key, new Entry(value, etag, null, fetched));
+	}
+
+	/**
+	 * Renew the time to live of an entry confirmed by a <code>304 Not Modified</code> response.
+	 *
+	 * @param key   The cache key.
+	 * @param entry The revalidated entry.
+	 */
+	public void touch(final Key key, final Entry entry) {
+		final var touched = new Entry(entry.getValue(), entry.getEtag(), entry.getLastModified(),
+				System.currentTimeMillis());
+		synchronized (this) {
+			entries.put(key, touched);
+		}
+		getShared().put(key, touched);
+	}
+
+	/**
+	 * Wait for a resource fetched by another Ligoj node. Returns immediately when this node acquires the fetch lease,
+	 * or when the lease is released without a new entry.
+	 *
+	 * @param key   The cache key.
+	 * @param stale The cached entry to renew. May be <code>null</code>.
+	 * @return The entry fetched by another node. <code>null</code> when this node must fetch the resource, the lease
+	 *         must then be released.
+	 */
+	public Entry await(final Key key, final Entry stale) {
+		final var shared = getShared();
+		final long duration = TimeUnit.SECONDS.toMillis(configuration.get(CONF_SHARED_LEASE, DEFAULT_SHARED_LEASE));
+		final long deadline = System.currentTimeMillis() + duration;
+		while (!shared.lease(key, duration) && System.currentTimeMillis() < deadline) {
+			try {
+				Thread.sleep(SHARED_WAIT);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			final var entry = shared.get(key);
+			if (entry != null && (stale == null || entry.getFetched() > stale.getFetched())) {
+				synchronized (this) {
+					entries.put(key, entry);
+				}
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Release the fetch lease of a resource.
+	 *
+	 * @param key The cache key.
+	 */
+	public void release(final Key key) {
+		getShared().release(key);
+	}
+
+	/**
+	 * Invalidate the cached resources of a node related to a job: the job's resources, with the API v2 or the API v3,
+	 * and the repository listings. The invalidation is spread to the other Ligoj nodes.
+	 *
+	 * @param parameters The node parameters.
+	 * @param job        The job name.
+	 */
+	public void invalidate(final Map<String, String> parameters, final String job) {
+		final var node = TravisClientRegistry.toKey(parameters);
+		evict(node, job);
+		getShared().invalidate(node, job);
+	}
+
+	/**
+	 * Invalidate the cached resources of a node related to a job in this Ligoj node only.
+	 *
+	 * @param node The API URL and token hash.
+	 * @param job  The job name.
+	 */
+	public synchronized void evict(final String node, final String job) {
+		entries.keySet().removeIf(k -> k.node().equals(node) && matches(k.resource(), job));
+	}
+
+	/**
+	 * Indicates a resource path is related to a job. Only the exact path segments of the job are matched, so the jobs
+	 * sharing the same prefix are kept.
+	 *
+	 * @param resource The resource path.
+	 * @param job      The job name.
+	 * @return <code>true</code> for the job's resources and the repository listing of its owner.
+	 */
+	static boolean matches(final String resource, final String job) {
+		final var path = StringUtils.removeStart(resource, "/");
+		final var owner = "repos?owner_name=" + StringUtils.substringBefore(job, "/");
+		return isWithin(path, "repos/" + job)
+				|| isWithin(path, "repo/" + URLEncoder.encode(job, StandardCharsets.UTF_8)) || path.equals(owner)
+				|| path.startsWith(owner + "&");
+	}
+
+	/**
+	 * Indicates a resource path is the given repository path or one of its sub-resources.
+	 */
+	private static boolean isWithin(final String path, final String repository) {
+		return path.startsWith(repository) && (path.length() == repository.length()
+				|| path.charAt(repository.length()) == '/' || path.charAt(repository.length()) == '?');
+	}
+
+	/**
+	 * Invalidate all the cached resources of this Ligoj node.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+}
@@ -0,0 +1,75 @@
+package org.ligoj.app.plugin.travis;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.ligoj.bootstrap.core.curl.CurlRequest;
+import org.ligoj.bootstrap.core.curl.DefaultHttpResponseCallback;
+
+/**
+ * Travis response callback saving the status and the headers of {@link TravisCurlRequest}. A
+ * <code>304 Not Modified</code> response is accepted. A successful response of a request having a parser is parsed
+ * from the response stream, and its size and parse time are saved.
+ */
+public class TravisResponseCallback extends DefaultHttpResponseCallback {
+
+	@Override
+	public boolean onResponse(final CurlRequest request, final ClassicHttpResponse response) throws IOException {
+		if (request instanceof TravisCurlRequest travisRequest) {
+			travisRequest.setStatusCode(response.getCode());
+			for (final var header : response.getHeaders()) {
+				travisRequest.getResponseHeaders().put(header.getName(), header.getValue());
+			}
+			if (response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+				return true;
+			}
+			if (travisRequest.getParser() != null) {
+				return parse(travisRequest, response);
+			}
+			if (response.getEntity() != null) {
+				travisRequest.setResponseSize(response.getEntity().getContentLength());
+			}
+		}
+		return super.onResponse(request, response);
+	}
+
+	private boolean parse(final TravisCurlRequest request, final ClassicHttpResponse response) throws IOException {
+		final var entity = response.getEntity();
+		if (response.getCode() < HttpStatus.SC_OK || response.getCode() >= HttpStatus.SC_REDIRECTION) {
+			EntityUtils.consume(entity);
+			return false;
+		}
+		if (entity != null) {
+			final long start = System.nanoTime();
+			try (var input = new CountingStream(entity.getContent())) {
+				request.setResult(request.getParser().parse(input));
+				request.setResponseSize(input.count);
+			} finally {
+				request.setParseTime(System.nanoTime() - start);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stream counting the read bytes.
+	 */
+	private static class CountingStream extends ProxyInputStream {
+		private long count;
+
+		private CountingStream(final InputStream input) {
+			super(input);
+		}
+
+		@Override
+		protected void afterRead(final int n) {
+			if (n > 0) {
+				count += n;
+			}
+		}
+	}
+}
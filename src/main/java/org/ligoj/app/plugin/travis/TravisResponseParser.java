@@ -0,0 +1,22 @@
+package org.ligoj.app.plugin.travis;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parser of a successful Travis response, reading directly the response stream.
+ *
+ * @param <T> The parsed type.
+ */
+@FunctionalInterface
+public interface TravisResponseParser<T> {
+
+	/**
+	 * Parse the response content.
+	 *
+	 * @param input The response stream. Closed by the caller.
+	 * @return The parsed content. May be <code>null</code>.
+	 * @throws IOException When the stream cannot be read.
+	 */
+	T parse(InputStream input) throws IOException;
+}
@@ -0,0 +1,437 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of the Travis repositories of each node, answering the job search without calling Travis. An
+ * index is loaded in the background on the first search of a node, then periodically rebuilt. The statuses of the
+ * indexed jobs are updated each time a job is fetched, and the repositories found by a remote search are added
+ * between two rebuilds.
+ */
+@Component
+@Slf4j
+public class TravisSearchIndex {
+
+	/**
+	 * Configuration key of the maximal amount of indexed repositories per node.
+	 */
+	public static final String CONF_INDEX_MAX = TravisPluginResource.KEY + ":index-max";
+
+	/**
+	 * Configuration key of the delay, in seconds, between two rebuilds of an index.
+	 */
+	public static final String CONF_INDEX_REFRESH = TravisPluginResource.KEY + ":index-refresh";
+
+	/**
+	 * Default maximal amount of indexed repositories per node.
+	 */
+	private static final int DEFAULT_INDEX_MAX = 50000;
+
+	/**
+	 * Default delay between two rebuilds, in seconds.
+	 */
+	private static final int DEFAULT_INDEX_REFRESH = 3600;
+
+	/**
+	 * Page size used to load an index.
+	 */
+	public static final int PAGE_SIZE = 100;
+
+	/**
+	 * Minimal criteria length enabling the fuzzy matching.
+	 */
+	private static final int FUZZY_MIN_LENGTH = 4;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	/**
+	 * Indexes by node API URL and token hash.
+	 */
+	private final Map<String, NodeIndex> indexes = new ConcurrentHashMap<>();
+
+	/**
+	 * Page loaders by node API URL and token hash, used by the rebuilds.
+	 */
+	private final Map<String, IntFunction<List<Job>>> loaders = new ConcurrentHashMap<>();
+
+	/**
+	 * Last scheduled build by node API URL and token hash.
+	 */
+	private final Map<String, CompletableFuture<Void>> builds = new ConcurrentHashMap<>();
+
+	/**
+	 * Incremented on each clear, invalidating the running loads.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * The immutable index of a node. Only the indexed jobs are replaced by the status updates.
+	 */
+	static class NodeIndex {
+
+		/**
+		 * Jobs sorted by slug.
+		 */
+		private final Job[] jobs;
+
+		/**
+		 * Lower case slugs, sorted.
+		 */
+		private final String[] slugs;
+
+		/**
+		 * Slug and description tokens to the matching job positions.
+		 */
+		private final TreeMap<String, int[]> tokens = new TreeMap<>();
+
+		private final long built;
+
+		private final long duration;
+
+		/**
+		 * When <code>true</code>, the repositories were cut by the memory cap, so a search may miss some of them.
+		 */
+		private final boolean truncated;
+
+		NodeIndex(final List<Job> jobs, final long start, final boolean truncated) {
+			this(jobs, start, truncated, System.currentTimeMillis());
+		}
+
+		private NodeIndex(final List<Job> jobs, final long start, final boolean truncated, final long built) {
+			this.truncated = truncated;
+			this.built = built;
+			this.jobs = jobs.stream().filter(j -> j.getId() != null)
+					.sorted(Comparator.comparing(j -> j.getId().toLowerCase(Locale.ENGLISH))).toArray(Job[]::new);
+			this.slugs = Arrays.stream(this.jobs).map(j -> j.getId().toLowerCase(Locale.ENGLISH))
+					.toArray(String[]::new);
+			final Map<String, Set<Integer>> positions = new TreeMap<>();
+			for (int i = 0; i < this.jobs.length; i++) {
+				final int position = i;
+				tokenize(slugs[i] + " " + StringUtils.defaultString(this.jobs[i].getDescription()))
+						.forEach(t -> positions.computeIfAbsent(t, k -> new HashSet<>()).add(position));
+			}
+			positions.forEach((t, p) -> tokens.put(t, p.stream().mapToInt(Integer::intValue).sorted().toArray()));
+			this.duration = System.currentTimeMillis() - start;
+		}
+
+		/**
+		 * Return the position of the given slug.
+		 */
+		private int indexOf(final String slug) {
+			return Arrays.binarySearch(slugs, slug.toLowerCase(Locale.ENGLISH));
+		}
+	}
+
+	/**
+	 * Start the periodic rebuild.
+	 */
+	@PostConstruct
+	public void start() {
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			final var thread = new Thread(r, "travis-search-index");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::rebuildExpired, 1, 1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Stop the periodic rebuild.
+	 */
+	@PreDestroy
+	public void stop() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Split a text into lower case tokens.
+	 */
+	private static List<String> tokenize(final String text) {
+		return Arrays.stream(text.toLowerCase(Locale.ENGLISH).split("[^\\p{L}\\p{N}]+")).filter(t -> !t.isEmpty())
+				.toList();
+	}
+
+	/**
+	 * Search the indexed jobs of a node. Jobs are ordered by relevance: slug prefix, name prefix, token prefix, then
+	 * fuzzy token match.
+	 *
+	 * @param key      The node API URL and token hash.
+	 * @param criteria The search criteria.
+	 * @param limit    The maximal amount of returned jobs.
+	 * @return The matching jobs. <code>null</code> when this node is not yet indexed, or when its index is empty or
+	 *         truncated by the memory cap, and so cannot answer the search.
+	 */
+	public List<Job> find(final String key, final String criteria, final int limit) {
+		final var index = indexes.get(key);
+		if (index == null || index.jobs.length == 0 || index.truncated) {
+			return null;
+		}
+		final var lower = StringUtils.trimToEmpty(criteria).toLowerCase(Locale.ENGLISH);
+		final Map<Integer, Integer> scores = new TreeMap<>();
+
+		// Slug prefix
+		final int from = Arrays.binarySearch(index.slugs, lower);
+		for (int i = from < 0 ? -from - 1 : from; i < index.slugs.length && index.slugs[i].startsWith(lower); i++) {
+			scores.putIfAbsent(i, 0);
+		}
+		if (lower.isEmpty()) {
+			return toJobs(index, scores, limit);
+		}
+		for (int i = 0; i < index.slugs.length; i++) {
+			if (StringUtils.substringAfter(index.slugs[i], "/").startsWith(lower)) {
+				scores.putIfAbsent(i, 1);
+			}
+		}
+
+		// Token prefix and fuzzy matches, all the criteria tokens must match
+		final var criteriaTokens = tokenize(lower);
+		Map<Integer, Integer> tokenScores = null;
+		for (final var token : criteriaTokens) {
+			final Map<Integer, Integer> matches = new TreeMap<>();
+			index.tokens.subMap(token, token + Character.MAX_VALUE).values()
+					.forEach(p -> Arrays.stream(p).forEach(i -> matches.put(i, 2)));
+			if (token.length() >= FUZZY_MIN_LENGTH) {
+				index.tokens.forEach((t, p) -> {
+					if (isClose(token, t)) {
+						Arrays.stream(p).forEach(i -> matches.putIfAbsent(i, 3));
+					}
+				});
+			}
+			if (tokenScores == null) {
+				tokenScores = matches;
+			} else {
+				tokenScores.keySet().retainAll(matches.keySet());
+				tokenScores.replaceAll((i, s) -> Math.max(s, matches.get(i)));
+			}
+		}
+		if (tokenScores != null) {
+			tokenScores.forEach(scores::putIfAbsent);
+		}
+		return toJobs(index, scores, limit);
+	}
+
+	/**
+	 * Return the jobs ordered by score, then by slug.
+	 */
+	private List<Job> toJobs(final NodeIndex index, final Map<Integer, Integer> scores, final int limit) {
+		return scores.entrySet().stream()
+				.sorted(Map.Entry.<Integer, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+				.limit(limit).map(e -> index.jobs[e.getKey()]).toList();
+	}
+
+	/**
+	 * Indicates the given token is at most one edit away from the indexed token or from one of its prefixes.
+	 */
+	static boolean isClose(final String token, final String indexed) {
+		return distance(token, indexed) <= 1
+				|| indexed.length() > token.length() && distance(token, indexed.substring(0, token.length())) <= 1;
+	}
+
+	/**
+	 * Return the Levenshtein distance of two short strings.
+	 */
+	private static int distance(final String a, final String b) {
+		if (Math.abs(a.length() - b.length()) > 1) {
+			return 2;
+		}
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			for (int j = 1; j <= b.length(); j++) {
+				final int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+			}
+			final int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+
+	/**
+	 * Load the index of a node in the background when not yet indexed.
+	 *
+	 * @param key    The node API URL and token hash.
+	 * @param loader The page loader, taking the offset. Ignored when this node is already loaded.
+	 * @return The last scheduled build of this node, completed once the index is replaced or the build has failed.
+	 */
+	public CompletableFuture<Void> load(final String key, final IntFunction<List<Job>> loader) {
+		if (loaders.putIfAbsent(key, loader) == null) {
+			rebuild(key);
+		}
+		return builds.getOrDefault(key, CompletableFuture.completedFuture(null));
+	}
+
+	/**
+	 * Rebuild the index of a node in the background.
+	 *
+	 * @param key The node API URL and token hash.
+	 * @return <code>true</code> when the rebuild is scheduled, <code>false</code> when this node has never been
+	 *         searched.
+	 */
+	public boolean rebuild(final String key) {
+		final var loader = loaders.get(key);
+		if (loader == null) {
+			return false;
+		}
+		final long current = generation.get();
+		builds.put(key, CompletableFuture.runAsync(() -> build(key, loader, current), scheduler));
+		return true;
+	}
+
+	/**
+	 * Rebuild the indexes older than the configured refresh delay.
+	 */
+	void rebuildExpired() {
+		final long limit = System.currentTimeMillis()
+				- TimeUnit.SECONDS.toMillis(configuration.get(CONF_INDEX_REFRESH, DEFAULT_INDEX_REFRESH));
+		indexes.forEach((key, index) -> {
+			if (index.built < limit) {
+				rebuild(key);
+			}
+		});
+	}
+
+	/**
+	 * Build the index of a node by walking all the pages, up to the configured memory cap.
+	 */
+	private void build(final String key, final IntFunction<List<Job>> loader, final long current) {
+		final long start = System.currentTimeMillis();
+		final int max = configuration.get(CONF_INDEX_MAX, DEFAULT_INDEX_MAX);
+		final List<Job> jobs = new ArrayList<>();
+		try {
+			List<Job> page;
+			do {
+				page = loader.apply(jobs.size());
+				jobs.addAll(page.subList(0, Math.min(page.size(), max - jobs.size())));
+			} while (page.size() == PAGE_SIZE && jobs.size() < max);
+		} catch (final RuntimeException e) {
+			log.warn("Unable to build the Travis index of {}", key.substring(0, key.lastIndexOf('|')), e);
+			return;
+		}
+		final var index = new NodeIndex(jobs, start, jobs.size() >= max);
+		if (generation.get() == current) {
+			indexes.put(key, index);
+		}
+	}
+
+	/**
+	 * Update the status of an indexed job.
+	 *
+	 * @param key The node API URL and token hash.
+	 * @param job The fetched job.
+	 */
+	public void update(final String key, final Job job) {
+		final var index = indexes.get(key);
+		if (index != null) {
+			final int position = index.indexOf(job.getId());
+			if (position >= 0) {
+				index.jobs[position] = job;
+			}
+		}
+	}
+
+	/**
+	 * Add the repositories found since the last build of the index of a node. The build time is kept, so the index
+	 * is still rebuilt on time.
+	 *
+	 * @param key  The node API URL and token hash.
+	 * @param jobs The found jobs, the already indexed ones are ignored.
+	 */
+	public void add(final String key, final List<Job> jobs) {
+		indexes.computeIfPresent(key, (k, index) -> {
+			final var added = jobs.stream().filter(j -> j.getId() != null && index.indexOf(j.getId()) < 0)
+					.collect(Collectors.toMap(j -> j.getId().toLowerCase(Locale.ENGLISH), Function.identity(),
+							(a, b) -> a));
+			if (added.isEmpty()) {
+				return index;
+			}
+			final List<Job> merged = new ArrayList<>(Arrays.asList(index.jobs));
+			merged.addAll(added.values());
+			return new NodeIndex(merged, System.currentTimeMillis(), index.truncated, index.built);
+		});
+	}
+
+	/**
+	 * Merge a notified status into an indexed job. The indexed name and description are kept, since a notification
+	 * does not carry them.
+	 *
+	 * @param key The node API URL and token hash.
+	 * @param job The notified job status.
+	 */
+	public void merge(final String key, final Job job) {
+		final var index = indexes.get(key);
+		if (index != null) {
+			final int position = index.indexOf(job.getId());
+			if (position >= 0) {
+				final var indexed = index.jobs[position];
+				final var merged = new Job();
+				merged.setId(indexed.getId());
+				merged.setName(indexed.getName());
+				merged.setDescription(indexed.getDescription());
+				merged.setStatus(job.getStatus());
+				merged.setBuilding(job.isBuilding());
+				merged.setLastBuildId(job.getLastBuildId());
+				merged.setLastBuildFinishedAt(job.getLastBuildFinishedAt());
+				index.jobs[position] = merged;
+			}
+		}
+	}
+
+	/**
+	 * Drop all the indexes and cancel the running loads.
+	 */
+	public void clear() {
+		generation.incrementAndGet();
+		indexes.clear();
+		loaders.clear();
+		builds.clear();
+	}
+
+	/**
+	 * Return the index metrics.
+	 *
+	 * @return The index metrics by API URL and token hash prefix: amount of jobs, amount of tokens, build duration
+	 *         in milliseconds, build time and truncation by the memory cap.
+	 */
+	public Map<String, Object> getMetrics() {
+		final Map<String, Object> result = new TreeMap<>();
+		indexes.forEach((key, index) -> result.put(key.substring(0, key.length() - 56),
+				Map.of("jobs", index.jobs.length, "tokens", index.tokens.size(), "duration", index.duration, "built",
+						index.built, "truncated", index.truncated)));
+		return result;
+	}
+}
@@ -0,0 +1,70 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Second level of the {@link TravisResponseCache}, shared by the Ligoj nodes of a cluster. The implementation is
+ * selected by name with the {@link TravisResponseCache#CONF_SHARED_CACHE} configuration.
+ */
+public interface TravisSharedCache {
+
+	/**
+	 * Return the name of this implementation.
+	 *
+	 * @return The name.
+	 */
+	String getName();
+
+	/**
+	 * Return the shared entry of a resource.
+	 *
+	 * @param key The cache key.
+	 * @return The shared entry, fresh or not. <code>null</code> when not shared.
+	 */
+	TravisResponseCache.Entry get(TravisResponseCache.Key key);
+
+	/**
+	 * Share the entry of a resource.
+	 *
+	 * @param key   The cache key.
+	 * @param entry The entry to share.
+	 */
+	void put(TravisResponseCache.Key key, TravisResponseCache.Entry entry);
+
+	/**
+	 * Acquire the fetch lease of a resource, so a single Ligoj node calls Travis for it.
+	 *
+	 * @param key      The cache key.
+	 * @param duration The lease duration in milliseconds.
+	 * @return <code>true</code> when this node has acquired the lease, <code>false</code> when another node holds
+	 *         it.
+	 */
+	boolean lease(TravisResponseCache.Key key, long duration);
+
+	/**
+	 * Release the fetch lease of a resource held by this node.
+	 *
+	 * @param key The cache key.
+	 */
+	void release(TravisResponseCache.Key key);
+
+	/**
+	 * Drop the shared resources of a node related to a job, and notify the other Ligoj nodes.
+	 *
+	 * @param node The API URL and token hash.
+	 * @param job  The job name.
+	 */
+	void invalidate(String node, String job);
+
+	/**
+	 * Register the listener of the invalidations published by the other Ligoj nodes.
+	 *
+	 * @param listener Called with the API URL and token hash, and the job name.
+	 */
+	void subscribe(BiConsumer<String, String> listener);
+
+	/**
+	 * Drop all the shared resources.
+	 */
+	void clear();
+}
@@ -0,0 +1,247 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Broadcaster of the job statuses to the Server-Sent Events listeners. Each watched job has a single upstream poll
+ * shared by all its listeners, and only the status changes are sent.
+ */
+@Component
+@Slf4j
+public class TravisStatusBroadcaster {
+
+	/**
+	 * Configuration key of the delay, in seconds, between two polls of a watched job.
+	 */
+	public static final String CONF_POLL = TravisPluginResource.KEY + ":sse-poll";
+
+	/**
+	 * Default delay between two polls, in seconds.
+	 */
+	private static final int DEFAULT_POLL = 15;
+
+	/**
+	 * SSE event name of a status change.
+	 */
+	public static final String EVENT_STATUS = "status";
+
+	/**
+	 * SSE event name of an asynchronous build outcome.
+	 */
+	public static final String EVENT_BUILD = "build";
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	/**
+	 * Watched jobs by node API URL, token hash and slug.
+	 */
+	private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * A listener of a subscription's job.
+	 */
+	private record Listener(int subscription, SseEventSink sink, Sse sse) {
+	}
+
+	/**
+	 * A watched job, its listeners and its last sent status.
+	 */
+	private static class Channel {
+		private final Callable<Job> poller;
+		private final Set<Listener> listeners = ConcurrentHashMap.newKeySet();
+		private Job last;
+		private ScheduledFuture<?> task;
+
+		private Channel(final Callable<Job> poller) {
+			this.poller = poller;
+		}
+	}
+
+	/**
+	 * Start the poll scheduler.
+	 */
+	@PostConstruct
+	public void start() {
+		scheduler = Executors.newScheduledThreadPool(2, r -> {
+			final var thread = new Thread(r, "travis-status-broadcaster");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Stop the polls and close the listeners.
+	 */
+	@PreDestroy
+	public void stop() {
+		scheduler.shutdownNow();
+		channels.values().forEach(c -> c.listeners.forEach(l -> l.sink().close()));
+		channels.clear();
+	}
+
+	/**
+	 * Return the channel key of a job.
+	 *
+	 * @param parameters The node parameters.
+	 * @param slug       The job name.
+	 * @return The channel key.
+	 */
+	public String toKey(final Map<String, String> parameters, final String slug) {
+		return TravisClientRegistry.toKey(parameters) + "|" + slug;
+	}
+
+	/**
+	 * Register a listener of a subscription's job. The first listener of a job starts its poll, the next ones
+	 * immediately receive the last known status.
+	 *
+	 * @param key          The channel key.
+	 * @param subscription The subscription identifier sent with the statuses.
+	 * @param poller       The status poller, used only when this job is not yet watched.
+	 * @param sink         The SSE sink.
+	 * @param sse          The SSE context.
+	 */
+	public void register(final String key, final int subscription, final Callable<Job> poller,
+			final SseEventSink sink, final Sse sse) {
+		final var listener = new Listener(subscription, sink, sse);
+		final var channel = channels.compute(key, (k, c) -> {
+			final var result = c == null ? new Channel(poller) : c;
+			result.listeners.add(listener);
+			return result;
+		});
+		synchronized (channel) {
+			if (channel.task == null) {
+				channel.task = scheduler.scheduleWithFixedDelay(() -> poll(key), 0,
+						configuration.get(CONF_POLL, DEFAULT_POLL), TimeUnit.SECONDS);
+			} else if (channel.last != null) {
+				send(channel, listener, EVENT_STATUS, "job", channel.last);
+			}
+		}
+	}
+
+	/**
+	 * Poll the status of a watched job.
+	 */
+	void poll(final String key) {
+		final var channel = channels.get(key);
+		if (channel == null) {
+			return;
+		}
+		channel.listeners.removeIf(l -> l.sink().isClosed());
+		if (channels.computeIfPresent(key, (k, c) -> c.listeners.isEmpty() ? null : c) == null) {
+			// No more listener, the task is set once the registration releases the channel
+			synchronized (channel) {
+				if (channel.task != null) {
+					channel.task.cancel(false);
+				}
+			}
+			return;
+		}
+		try {
+			publish(key, channel.poller.call());
+		} catch (final Exception e) {
+			log.info("Unable to poll the Travis job {}: {}", key.substring(key.lastIndexOf('|') + 1), e.getMessage());
+		}
+	}
+
+	/**
+	 * Send a job status to the listeners of this job when it differs from the last sent one.
+	 *
+	 * @param key The channel key.
+	 * @param job The new job status.
+	 */
+	public void publish(final String key, final Job job) {
+		final var channel = channels.get(key);
+		if (channel == null || job == null) {
+			return;
+		}
+		synchronized (channel) {
+			if (isSame(channel.last, job)) {
+				return;
+			}
+			channel.last = job;
+			channel.listeners.forEach(l -> send(channel, l, EVENT_STATUS, "job", job));
+		}
+	}
+
+	/**
+	 * Send an event to all the listeners of a job.
+	 *
+	 * @param key      The channel key.
+	 * @param event    The event name.
+	 * @param property The property name of the data sent with the subscription identifier.
+	 * @param data     The event data.
+	 */
+	public void notify(final String key, final String event, final String property, final Object data) {
+		final var channel = channels.get(key);
+		if (channel != null) {
+			channel.listeners.forEach(l -> send(channel, l, event, property, data));
+		}
+	}
+
+	/**
+	 * Indicates the two job statuses are identical for the listeners.
+	 */
+	private boolean isSame(final Job last, final Job job) {
+		return last != null && Objects.equals(last.getStatus(), job.getStatus())
+				&& last.isBuilding() == job.isBuilding() && Objects.equals(last.getLastBuildId(), job.getLastBuildId());
+	}
+
+	/**
+	 * Send an event to a listener, the listener is dropped when closed.
+	 */
+	private void send(final Channel channel, final Listener listener, final String event, final String property,
+			final Object data) {
+		if (listener.sink().isClosed()) {
+			channel.listeners.remove(listener);
+			return;
+		}
+		final var json = objectMapper
+				.writeValueAsString(Map.of("subscription", listener.subscription(), property, data));
+		listener.sink().send(listener.sse().newEvent(event, json)).exceptionally(e -> {
+			channel.listeners.remove(listener);
+			return null;
+		});
+	}
+
+	/**
+	 * Return the amount of watched jobs.
+	 *
+	 * @return The amount of watched jobs.
+	 */
+	public int size() {
+		return channels.size();
+	}
+
+	/**
+	 * Stop all the polls and drop the listeners without closing them.
+	 */
+	public void clear() {
+		channels.values().stream().filter(c -> c.task != null).forEach(c -> c.task.cancel(false));
+		channels.clear();
+	}
+}
@@ -0,0 +1,94 @@
+package org.ligoj.app.plugin.travis;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process store of the job statuses pushed by the Travis build notifications, keyed by node API URL, token hash
+ * and slug. A pushed status is served until the job has been quiet for the configured delay, then the status is
+ * polled again.
+ */
+@Component
+public class TravisStatusStore {
+
+	/**
+	 * Configuration key of the delay, in seconds, after which a job without notification is polled again.
+	 */
+	public static final String CONF_QUIET = TravisPluginResource.KEY + ":webhook-quiet";
+
+	/**
+	 * Default quiet delay, in seconds.
+	 */
+	private static final int DEFAULT_QUIET = 3600;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	/**
+	 * A pushed status.
+	 */
+	private record Entry(Job job, long updated) {
+	}
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Return the store key of a job.
+	 */
+	private String toKey(final Map<String, String> parameters, final String slug) {
+		return TravisClientRegistry.toKey(parameters) + "|" + slug;
+	}
+
+	/**
+	 * Return the pushed status of a job.
+	 *
+	 * @param parameters The node parameters.
+	 * @param slug       The job name.
+	 * @return The last pushed job status. <code>null</code> when there is no status or when the job is quiet.
+	 */
+	public Job get(final Map<String, String> parameters, final String slug) {
+		final var entry = entries.get(toKey(parameters, slug));
+		final long quiet = TimeUnit.SECONDS.toMillis(configuration.get(CONF_QUIET, DEFAULT_QUIET));
+		if (entry == null || System.currentTimeMillis() - entry.updated() > quiet) {
+			return null;
+		}
+		return entry.job();
+	}
+
+	/**
+	 * Save a pushed status. The description of the previous status is kept when the notification has none.
+	 *
+	 * @param parameters The node parameters.
+	 * @param job        The pushed job status.
+	 */
+	public void put(final Map<String, String> parameters, final Job job) {
+		entries.compute(toKey(parameters, job.getId()), (k, previous) -> {
+			if (job.getDescription() == null && previous != null) {
+				job.setDescription(previous.job().getDescription());
+			}
+			return new Entry(job, System.currentTimeMillis());
+		});
+	}
+
+	/**
+	 * Remove the pushed status of a job, so the next read fetches it again.
+	 *
+	 * @param parameters The node parameters.
+	 * @param slug       The job name.
+	 */
+	public void evict(final Map<String, String> parameters, final String slug) {
+		entries.remove(toKey(parameters, slug));
+	}
+
+	/**
+	 * Remove all the pushed statuses.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+}
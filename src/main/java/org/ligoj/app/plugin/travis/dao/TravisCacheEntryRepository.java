@@ -0,0 +1,58 @@
+package org.ligoj.app.plugin.travis.dao;
+
+import java.util.List;
+
+import org.ligoj.app.plugin.travis.model.TravisCacheEntry;
+import org.ligoj.bootstrap.core.dao.RestRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * {@link TravisCacheEntry} repository
+ */
+public interface TravisCacheEntryRepository extends RestRepository<TravisCacheEntry, String> {
+
+	/**
+	 * Return the shared resources of a node.
+	 *
+	 * @param node The API URL and token hash.
+	 * @return The shared resources of this node.
+	 */
+	List<TravisCacheEntry> findAllByNode(String node);
+
+	/**
+	 * Acquire the fetch lease of a resource when not held.
+	 *
+	 * @param id    The entry identifier.
+	 * @param owner The Ligoj node acquiring the lease.
+	 * @param now   The current time in milliseconds since the epoch.
+	 * @param until The end of the lease in milliseconds since the epoch.
+	 * @return The amount of updated entries: <code>1</code> when acquired.
+	 */
+	@Modifying
+	@Query("UPDATE TravisCacheEntry SET lease = :until, owner = :owner WHERE id = :id AND lease < :now")
+	int lease(@Param("id") String id, @Param("owner") String owner, @Param("now") long now,
+			@Param("until") long until);
+
+	/**
+	 * Release the fetch lease of a resource held by the given Ligoj node.
+	 *
+	 * @param id    The entry identifier.
+	 * @param owner The Ligoj node holding the lease.
+	 * @return The amount of updated entries.
+	 */
+	@Modifying
+	@Query("UPDATE TravisCacheEntry SET lease = 0 WHERE id = :id AND owner = :owner")
+	int release(@Param("id") String id, @Param("owner") String owner);
+
+	/**
+	 * Delete the resources fetched before the given time, and not leased.
+	 *
+	 * @param time The time in milliseconds since the epoch.
+	 * @return The amount of deleted entries.
+	 */
+	@Modifying
+	@Query("DELETE FROM TravisCacheEntry WHERE fetched < :time AND lease < :time")
+	int deleteOlder(@Param("time") long time);
+}
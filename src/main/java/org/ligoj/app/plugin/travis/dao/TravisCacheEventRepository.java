@@ -0,0 +1,33 @@
+package org.ligoj.app.plugin.travis.dao;
+
+import java.util.List;
+
+import org.ligoj.app.plugin.travis.model.TravisCacheEvent;
+import org.ligoj.bootstrap.core.dao.RestRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * {@link TravisCacheEvent} repository
+ */
+public interface TravisCacheEventRepository extends RestRepository<TravisCacheEvent, Integer> {
+
+	/**
+	 * Return the invalidations published after the given time.
+	 *
+	 * @param time The time in milliseconds since the epoch.
+	 * @return The invalidations ordered by identifier.
+	 */
+	List<TravisCacheEvent> findAllByCreatedGreaterThanOrderById(long time);
+
+	/**
+	 * Delete the invalidations published before the given time.
+	 *
+	 * @param time The time in milliseconds since the epoch.
+	 * @return The amount of deleted invalidations.
+	 */
+	@Modifying
+	@Query("DELETE FROM TravisCacheEvent WHERE created < :time")
+	int deleteOlder(@Param("time") long time);
+}
@@ -0,0 +1,21 @@
+package org.ligoj.app.plugin.travis.dao;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.ligoj.app.plugin.travis.model.TravisJobState;
+import org.ligoj.bootstrap.core.dao.RestRepository;
+
+/**
+ * {@link TravisJobState} repository
+ */
+public interface TravisJobStateRepository extends RestRepository<TravisJobState, Integer> {
+
+	/**
+	 * Return the states of the given subscriptions.
+	 *
+	 * @param subscriptions The subscription identifiers.
+	 * @return The states of these subscriptions.
+	 */
+	List<TravisJobState> findAllBySubscriptionIdIn(Collection<Integer> subscriptions);
+}
@@ -0,0 +1,82 @@
+package org.ligoj.app.plugin.travis.model;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Travis resource shared by the Ligoj nodes, with its fetch lease.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "LIGOJ_TRAVIS_CACHE")
+public class TravisCacheEntry implements Serializable {
+
+	/**
+	 * SID
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * SHA-256 of the cache key.
+	 */
+	@Id
+	@Size(max = 64)
+	private String id;
+
+	/**
+	 * API URL and token hash.
+	 */
+	@NotNull
+	@Size(max = 1100)
+	private String node;
+
+	/**
+	 * Resource path.
+	 */
+	@NotNull
+	@Size(max = 1024)
+	private String resource;
+
+	/**
+	 * JSON of the parsed resource. <code>null</code> while only leased.
+	 */
+	@Lob
+	private String data;
+
+	/**
+	 * Class name of the parsed resource, prefixed by <code>[</code> for a list.
+	 */
+	@Size(max = 255)
+	private String type;
+
+	@Size(max = 255)
+	private String etag;
+
+	@Size(max = 255)
+	private String lastModified;
+
+	/**
+	 * Fetch time, in milliseconds since the epoch.
+	 */
+	private long fetched;
+
+	/**
+	 * End of the fetch lease, in milliseconds since the epoch.
+	 */
+	private long lease;
+
+	/**
+	 * Ligoj node holding the fetch lease.
+	 */
+	@Size(max = 36)
+	private String owner;
+}
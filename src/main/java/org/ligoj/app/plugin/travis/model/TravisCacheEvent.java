@@ -0,0 +1,44 @@
+package org.ligoj.app.plugin.travis.model;
+
+import org.springframework.data.jpa.domain.AbstractPersistable;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Invalidation of the Travis resources of a job, published to the other Ligoj nodes.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "LIGOJ_TRAVIS_CACHE_EVENT")
+public class TravisCacheEvent extends AbstractPersistable<Integer> {
+
+	/**
+	 * SID
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * API URL and token hash.
+	 */
+	@NotNull
+	@Size(max = 1100)
+	private String node;
+
+	/**
+	 * Travis job's slug.
+	 */
+	@NotNull
+	@Size(max = 255)
+	private String job;
+
+	/**
+	 * Publication time, in milliseconds since the epoch.
+	 */
+	private long created;
+}
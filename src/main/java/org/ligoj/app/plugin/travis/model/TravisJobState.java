@@ -0,0 +1,70 @@
+package org.ligoj.app.plugin.travis.model;
+
+import org.ligoj.app.model.Subscription;
+import org.springframework.data.jpa.domain.AbstractPersistable;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Last known state of the Travis job of a subscription, restored when Ligoj starts.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "LIGOJ_TRAVIS_JOB_STATE", uniqueConstraints = @UniqueConstraint(columnNames = "subscription"))
+public class TravisJobState extends AbstractPersistable<Integer> {
+
+	/**
+	 * SID
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The subscription linked to the job.
+	 */
+	@NotNull
+	@ManyToOne
+	private Subscription subscription;
+
+	/**
+	 * Travis job's slug.
+	 */
+	@NotNull
+	@Size(max = 255)
+	private String job;
+
+	@Size(max = 1024)
+	private String description;
+
+	/**
+	 * Color of the last build state.
+	 */
+	@Size(max = 20)
+	private String status;
+
+	private boolean building;
+
+	@Size(max = 50)
+	private String lastBuildId;
+
+	@Size(max = 50)
+	private String lastBuildFinishedAt;
+
+	/**
+	 * Entity tag of the Travis repository document.
+	 */
+	@Size(max = 255)
+	private String etag;
+
+	/**
+	 * Fetch time of this state, in milliseconds since the epoch.
+	 */
+	private long fetched;
+}
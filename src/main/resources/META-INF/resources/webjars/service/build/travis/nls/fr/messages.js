@@ -5,18 +5,31 @@ define({
 	'service:build:travis:url-site': 'URL',
 	'service:build:travis:url-site-description': 'Web URL. Pour les projets open source utiliser https://travis-ci.org/',
 	'service:build:travis:api-token-description': 'Exécuter : gem install travis && travis login && travis token',
+	'service:build:travis:api-version': 'Version API',
+	'service:build:travis:api-version-description': '2 (par défaut) ou 3. La version 3 demande des documents plus petits',
 	'service:build:travis:build': 'Construire',
 	'service:build:travis:status-blue': 'Succès',
 	'service:build:travis:status-yellow': 'Instable',
 	'service:build:travis:status-disabled': 'Inconnu',
 	'service:build:travis:status-red': 'Échec',
 	'service:build:travis:building': 'En construction',
+	'service:build:travis:stale': 'dernier statut connu, Travis est indisponible',
+	'service:build:travis:stats-7': '7 derniers jours',
+	'service:build:travis:stats-30': '30 derniers jours',
+	'service:build:travis:stats-90': '90 derniers jours',
+	'service:build:travis:stats-pass': 'réussis',
+	'service:build:travis:stats-duration': 'durée',
+	'service:build:travis:stats-commit-delay': 'commit au lancement',
+	'service:build:travis:stats-builds': 'constructions',
 	'travis-build-job-success': 'Lancement du job {{this}} effectué',
+	'travis-build-queue-full': 'Trop de constructions en attente, réessayer plus tard',
+	'travis-unavailable': 'Travis est actuellement indisponible, réessayer plus tard',
 	'error': {
 		'travis-job': 'Tâche non trouvée',
 		'travis-connection': 'Serveur inatteignable',
 		'travis-login': 'Échec de l\'authentification',
-		'travis-rights': 'Droits insuffisants pour accéder aux tâches'
+		'travis-rights': 'Droits insuffisants pour accéder aux tâches',
+		'travis-notification': 'Notification de construction invalide'
 	},
 	'validation-job-name' : 'Doit commencer par {{this}}-, ne contenir que des caractères minuscules, sans caractères spéciaux'
 
@@ -8,18 +8,31 @@ define({
 		'service:build:travis:url-site-description': 'Web URL. For open source projects use https://travis-ci.org/',
 		'service:build:travis:api-token': 'Access token',
 		'service:build:travis:api-token-description': 'Execute : gem install travis && travis login && travis token',
+		'service:build:travis:api-version': 'API version',
+		'service:build:travis:api-version-description': '2 (default) or 3. The version 3 requests smaller documents',
 		'service:build:travis:build': 'Build',
 		'service:build:travis:status-blue': 'Success',
 		'service:build:travis:status-yellow': 'Unstable',
 		'service:build:travis:status-disabled': 'Unknown',
 		'service:build:travis:status-red': 'Failure',
 		'service:build:travis:building': 'Building',
+		'service:build:travis:stale': 'last known status, Travis is unavailable',
+		'service:build:travis:stats-7': 'Last 7 days',
+		'service:build:travis:stats-30': 'Last 30 days',
+		'service:build:travis:stats-90': 'Last 90 days',
+		'service:build:travis:stats-pass': 'passed',
+		'service:build:travis:stats-duration': 'duration',
+		'service:build:travis:stats-commit-delay': 'commit to start',
+		'service:build:travis:stats-builds': 'builds',
 		'travis-build-job-success': 'Launching the job {{this}} succeed',
+		'travis-build-queue-full': 'Too many pending builds, retry later',
+		'travis-unavailable': 'Travis is currently unavailable, retry later',
 		'error': {
 			'travis-job': 'Job not found',
 			'travis-connection': 'Unreachable server',
 			'travis-login': 'Authentication failed',
-			'travis-rights': 'No right to read jobs'
+			'travis-rights': 'No right to read jobs',
+			'travis-notification': 'Invalid build notification'
 		},
 		'validation-job-name' : 'Must start with {{this}}-, contain only lower case characters, without special characters'
 	},
@@ -22,6 +22,48 @@ define(function () {
 			yellow: 'fas fa-circle'
 		},
 
+		/**
+		 * Compact status color codes, see <code>JobStatuses</code>.
+		 * @type {Array} code to {String}
+		 */
+		statusCodes: ['blue', 'yellow', 'red', 'disabled'],
+
+		/**
+		 * Delay in milliseconds between two compact status refreshes, used when the event source is not supported.
+		 * @type {Number}
+		 */
+		refreshDelay: 30000,
+
+		/**
+		 * Subscriptions watched by the status event source.
+		 * @type {Object} subscription identifier to true
+		 */
+		watched: {},
+
+		/**
+		 * Subscriptions displayed by the running render, replacing the watched ones once this render is complete.
+		 * @type {Object} subscription identifier to true
+		 */
+		rendered: {},
+
+		/**
+		 * Rendered status icon attributes by status, building and stale flags.
+		 * @type {Object} key to {Object} with 'key', 'class' and 'title'
+		 */
+		statusCache: {},
+
+		/**
+		 * Status updates not yet written to the DOM.
+		 * @type {Object} subscription identifier to job
+		 */
+		pending: {},
+
+		/**
+		 * Status event source, shared by all the watched subscriptions.
+		 * @type {EventSource}
+		 */
+		eventSource: null,
+
 		initialize: function () {
 			current.$super('$view').on('click', '.service-build-travis-build', current.serviceBuildTravisBuild);
 		},
@@ -48,24 +90,211 @@ define(function () {
 		 * Render travis details : name and display name.
 		 */
 		renderDetailsKey: function (subscription) {
-			return current.$super('generateCarousel')(subscription, [
+			var items = [
 				[
 					'name', subscription.data.job.name || subscription.parameters['service:build:travis:job']
 				],
 				[
 					'description', subscription.data.job.description || '' 
 				]
-			], 0);
+			];
+			var stats = subscription.data.stats || {};
+			['7', '30', '90'].forEach(function (days) {
+				if (stats[days] && stats[days].builds) {
+					items.push(['service:build:travis:stats-' + days, current.renderStats(stats[days])]);
+				}
+			});
+			return current.$super('generateCarousel')(subscription, items, 0);
+		},
+
+		/**
+		 * Render the build trends of a window: pass rate, median and 95th percentile duration, median commit to start delay.
+		 */
+		renderStats: function (window) {
+			var result = [];
+			if (window.passRate !== null && window.passRate !== undefined) {
+				result.push(Math.round(window.passRate * 100) + '% ' + current.$messages['service:build:travis:stats-pass']);
+			}
+			result.push(current.$messages['service:build:travis:stats-duration'] + ' ' + current.formatDuration(window.medianDuration) + ' (p95 ' + current.formatDuration(window.p95Duration) + ')');
+			if (window.medianCommitDelay !== null && window.medianCommitDelay !== undefined) {
+				result.push(current.$messages['service:build:travis:stats-commit-delay'] + ' ' + current.formatDuration(window.medianCommitDelay));
+			}
+			return result.join(', ') + ' - ' + window.builds + ' ' + current.$messages['service:build:travis:stats-builds'];
+		},
+
+		/**
+		 * Format a duration in seconds.
+		 */
+		formatDuration: function (seconds) {
+			return seconds >= 60 ? Math.floor(seconds / 60) + 'm' + (seconds % 60 ? seconds % 60 + 's' : '') : seconds + 's';
 		},
 
 		/**
 		 * Display the status of the job, including the building state
 		 */
 		renderDetailsFeatures: function (subscription) {
-			var job = subscription.data.job;
-			var title = (current.$messages['service:build:travis:status-' + job.status] || job.status) + (job.building ? ' (' + current.$messages['service:build:travis:building'] + ')' : '');
-			var clazz = (current.jobStatusColor[job.status] || 'text-muted') + ' ' + (job.building ? 'fa-sync-alt fa-spin' : current.jobStatusTypo[job.status] || 'fas fa-circle');
-			return '<i data-toggle="tooltip" title="' + title + '" class="' + clazz + '"></i>';
+			current.watch(subscription.id);
+			var status = current.statusAttributes(subscription.data.job);
+			return '<i data-toggle="tooltip" data-subscription="' + subscription.id + '" data-status="' + status.key + '" title="' + status.title + '" class="' + status['class'] + '"></i>';
+		},
+
+		/**
+		 * Return the status icon attributes of a job, computed once per status, building and stale flags.
+		 */
+		statusAttributes: function (job) {
+			var key = job.status + (job.building ? '+' : '-') + (job.stale ? '+' : '-');
+			return current.statusCache[key] || (current.statusCache[key] = {
+				key: key,
+				'class': 'service-build-travis-status ' + current.statusClass(job),
+				title: current.statusTitle(job)
+			});
+		},
+
+		/**
+		 * Return the status icon title of a job.
+		 */
+		statusTitle: function (job) {
+			return (current.$messages['service:build:travis:status-' + job.status] || job.status) + (job.building ? ' (' + current.$messages['service:build:travis:building'] + ')' : '') + (job.stale ? ' (' + current.$messages['service:build:travis:stale'] + ')' : '');
+		},
+
+		/**
+		 * Return the status icon classes of a job.
+		 */
+		statusClass: function (job) {
+			return (current.jobStatusColor[job.status] || 'text-muted') + ' ' + (job.building ? 'fa-sync-alt fa-spin' : current.jobStatusTypo[job.status] || 'fas fa-circle');
+		},
+
+		/**
+		 * Watch the status changes of a subscription. The watched subscriptions are replaced by the rendered ones, and
+		 * the event source is (re)opened, once all the rows are rendered.
+		 */
+		watch: function (subscription) {
+			if (!current.watchTimeout) {
+				// First row of a new render
+				current.rendered = {};
+			}
+			current.rendered[subscription] = true;
+			clearTimeout(current.watchTimeout);
+			current.watchTimeout = setTimeout(current.listen, 0);
+		},
+
+		/**
+		 * Open the status event source for all the watched subscriptions, and update the status icons in place. The
+		 * previous event source is closed first, and kept when the watched subscriptions are unchanged. Without event
+		 * source support, the statuses are refreshed periodically in a single compact request.
+		 */
+		listen: function () {
+			var previous = Object.keys(current.watched).sort().join(',');
+			current.watchTimeout = null;
+			current.watched = current.rendered;
+			current.rendered = {};
+			if (typeof EventSource === 'undefined') {
+				clearTimeout(current.refreshTimeout);
+				current.refresh();
+				return;
+			}
+			if (current.eventSource && Object.keys(current.watched).sort().join(',') === previous) {
+				return;
+			}
+			if (current.eventSource) {
+				current.eventSource.close();
+				current.eventSource = null;
+			}
+			if ($.isEmptyObject(current.watched)) {
+				return;
+			}
+			var query = Object.keys(current.watched).map(function (subscription) {
+				return 'subscription=' + subscription;
+			}).join('&');
+			current.eventSource = new EventSource(REST_PATH + 'service/build/travis/events?' + query);
+			current.eventSource.addEventListener('status', function (event) {
+				var data = JSON.parse(event.data);
+				current.queueStatus(data.subscription, data.job);
+			});
+		},
+
+		/**
+		 * Refresh the status icons of all the watched subscriptions with a single compact status request, then schedule
+		 * the next refresh while some subscriptions are displayed.
+		 */
+		refresh: function () {
+			var subscriptions = Object.keys(current.watched).map(Number);
+			if (subscriptions.length === 0) {
+				return;
+			}
+			$.ajax({
+				dataType: 'json',
+				contentType: 'application/json',
+				url: REST_PATH + 'service/build/travis/status/compact',
+				type: 'POST',
+				data: JSON.stringify(subscriptions),
+				success: current.applyStatuses,
+				complete: function () {
+					current.refreshTimeout = setTimeout(current.refresh, current.refreshDelay);
+				}
+			});
+		},
+
+		/**
+		 * Update the status icons from the compact status columns: subscriptions, slug dictionary, slug indexes and
+		 * Base64 status codes.
+		 */
+		applyStatuses: function (data) {
+			var codes = atob(data.status || '');
+			for (var i = 0; i < data.subscriptions.length; i++) {
+				current.queueStatus(data.subscriptions[i], current.toJob(data.jobs[data.job[i]], codes.charCodeAt(i)));
+			}
+		},
+
+		/**
+		 * Return the job of a compact status code.
+		 */
+		toJob: function (slug, code) {
+			return {
+				id: slug,
+				status: current.statusCodes[code & 3],
+				building: (code & 4) !== 0,
+				stale: (code & 8) !== 0
+			};
+		},
+
+		/**
+		 * Queue the status update of a subscription. The queued updates are written together in the next frame.
+		 */
+		queueStatus: function (subscription, job) {
+			current.pending[subscription] = job;
+			if (!current.frame) {
+				current.frame = window.requestAnimationFrame ? window.requestAnimationFrame(current.flushStatuses) : setTimeout(current.flushStatuses, 0);
+			}
+		},
+
+		/**
+		 * Write the queued status updates in a single pass: the displayed icons are looked up once, and only the
+		 * changed ones are written. A subscription no more displayed is no more watched.
+		 */
+		flushStatuses: function () {
+			var pending = current.pending;
+			current.pending = {};
+			current.frame = null;
+			var icons = {};
+			$('.service-build-travis-status').each(function () {
+				icons[this.getAttribute('data-subscription')] = this;
+			});
+			Object.keys(pending).forEach(function (subscription) {
+				var icon = icons[subscription];
+				if (!icon) {
+					// This subscription is no more displayed
+					delete current.watched[subscription];
+					return;
+				}
+				var status = current.statusAttributes(pending[subscription]);
+				if (icon.getAttribute('data-status') !== status.key) {
+					icon.setAttribute('data-status', status.key);
+					icon.className = status['class'];
+					icon.setAttribute('title', status.title);
+					icon.setAttribute('data-original-title', status.title);
+				}
+			});
 		},
 
 		configureSubscriptionParameters: function (configuration) {
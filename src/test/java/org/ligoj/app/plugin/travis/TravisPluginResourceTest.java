@@ -1,6 +1,13 @@
 package org.ligoj.app.plugin.travis;
 
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
+import jakarta.ws.rs.ForbiddenException;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import org.apache.commons.io.IOUtils;
 import org.apache.hc.core5.http.HttpStatus;
 import org.junit.jupiter.api.Assertions;
@@ -12,26 +19,59 @@ import org.ligoj.app.api.SubscriptionStatusWithData;
 import org.ligoj.app.iam.model.DelegateOrg;
 import org.ligoj.app.model.*;
 import org.ligoj.app.plugin.build.BuildResource;
+import org.ligoj.app.plugin.travis.dao.TravisCacheEntryRepository;
+import org.ligoj.app.plugin.travis.dao.TravisJobStateRepository;
 import org.ligoj.app.resource.node.ParameterValueResource;
 import org.ligoj.app.resource.subscription.SubscriptionResource;
 import org.ligoj.bootstrap.MatcherUtil;
 import org.ligoj.bootstrap.core.resource.BusinessException;
 import org.ligoj.bootstrap.core.validation.ValidationJsonException;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -51,6 +91,57 @@ class TravisPluginResourceTest extends AbstractServerTest {
 	@Autowired
 	private SubscriptionResource subscriptionResource;
 
+	@Autowired
+	private TravisResponseCache cache;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@Autowired
+	private TravisSearchIndex index;
+
+	@Autowired
+	private TravisStatusStore statuses;
+
+	@Autowired
+	private TravisStatusBroadcaster broadcaster;
+
+	@Autowired
+	private TravisBuildQueue buildQueue;
+
+	@Autowired
+	private TravisRateLimiter limiter;
+
+	@Autowired
+	private TravisClientRegistry clients;
+
+	@Autowired
+	private TravisMetrics metrics;
+
+	@Autowired
+	private TravisBuildStats stats;
+
+	@Autowired
+	private TravisCircuitBreaker breaker;
+
+	@Autowired
+	private TravisFanOut fanOut;
+
+	@Autowired
+	private TravisRefresher refresher;
+
+	@Autowired
+	private TravisJobStateStore jobStates;
+
+	@Autowired
+	private TravisJobStateRepository jobStateRepository;
+
+	@Autowired
+	private TravisDatabaseCache databaseCache;
+
+	@Autowired
+	private TravisCacheEntryRepository cacheEntryRepository;
+
 	protected int subscription;
 
 	@BeforeEach
@@ -60,6 +151,24 @@ class TravisPluginResourceTest extends AbstractServerTest {
 				new Class<?>[]{Node.class, Parameter.class, Project.class, Subscription.class, ParameterValue.class, DelegateOrg.class},
 				StandardCharsets.UTF_8);
 		this.subscription = getSubscription("Jupiter");
+		cache.clear();
+		index.clear();
+		statuses.clear();
+		broadcaster.clear();
+		buildQueue.clear();
+		limiter.clear();
+		stats.clear();
+		breaker.clear();
+		fanOut.clear();
+		refresher.clear();
+		jobStates.clear();
+		databaseCache.clear();
+		configuration.put(TravisResponseCache.CONF_SHARED_CACHE, TravisLocalCache.NAME);
+		configuration.put(TravisResponseCache.CONF_CACHE_TTL, "30");
+		configuration.put(TravisStatusStore.CONF_QUIET, "3600");
+		configuration.put(TravisCircuitBreaker.CONF_FAILURES, "5");
+		configuration.put(TravisCircuitBreaker.CONF_OPEN, "30");
+		configuration.put(TravisFanOut.CONF_TIMEOUT, "60");
 
 		// Coverage only
 		Assertions.assertEquals("service:build:travis", resource.getKey());
@@ -140,6 +249,235 @@ class TravisPluginResourceTest extends AbstractServerTest {
 		checkJob(resource.validateJob(parameters), true, "yellow");
 	}
 
+	@Test
+	void validateJobCached() throws IOException, URISyntaxException {
+		addJobAccess();
+		httpServer.start();
+
+		final Map<String, String> parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+		parameters.put(TravisPluginResource.PARAMETER_JOB, "ligoj/plugin-vm-google");
+		checkJob(resource.validateJob(parameters), false, "blue");
+		checkJob(resource.validateJob(parameters), false, "blue");
+		httpServer.verify(1, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+	}
+
+	@Test
+	void validateJobThrottled() throws IOException, URISyntaxException {
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google")).inScenario("rate").whenScenarioStateIs(Scenario.STARTED)
+				.willReturn(aResponse().withStatus(429).withHeader("Retry-After", "0")
+						.withHeader("X-RateLimit-Remaining", "0")).willSetStateTo("reset"));
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google")).inScenario("rate").whenScenarioStateIs("reset")
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withHeader("X-RateLimit-Remaining", "4999")
+						.withBody(IOUtils.toString(
+								new ClassPathResource("mock-server/travis/travis-ligoj-vm-google-config.json").getInputStream(),
+								StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		final Map<String, String> parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+		parameters.put(TravisPluginResource.PARAMETER_JOB, "ligoj/plugin-vm-google");
+		checkJob(resource.validateJob(parameters), false, "blue");
+		httpServer.verify(2, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+
+		@SuppressWarnings("unchecked")
+		final var metrics = (Map<String, Object>) resource.getMetrics().get("rate");
+		@SuppressWarnings("unchecked")
+		final var rate = (Map<String, Object>) metrics.entrySet().stream()
+				.filter(e -> e.getKey().startsWith("http://localhost:8120|")).findFirst().orElseThrow().getValue();
+		Assertions.assertEquals(1L, rate.get("throttled"));
+		Assertions.assertEquals(0, rate.get("interactive"));
+	}
+
+	@Test
+	void processReleasesPermitWhileWaiting() throws InterruptedException {
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)));
+		httpServer.start();
+		final var limiter = mock(TravisRateLimiter.class);
+		final var permits = new Semaphore(1);
+		final var released = new AtomicBoolean();
+		doAnswer(i -> {
+			// The permit of the waiting background request is available to the other requests
+			released.set(permits.tryAcquire());
+			permits.release();
+			return null;
+		}).when(limiter).acquire(anyString(), eq(TravisRateLimiter.Priority.BACKGROUND));
+		permits.acquire();
+		final var processor = new TravisCurlProcessor(pvResource.getNodeParameters("service:build:travis:bpr"), limiter,
+				null, null, permits);
+		final var request = new TravisCurlRequest("GET", "http://localhost:8120/repos/ligoj/plugin-vm-google", null);
+		request.setPriority(TravisRateLimiter.Priority.BACKGROUND);
+		Assertions.assertTrue(processor.process(request));
+		processor.close();
+		Assertions.assertTrue(released.get());
+
+		// The permit is held again by the caller
+		Assertions.assertEquals(0, permits.availablePermits());
+	}
+
+	@Test
+	void processInterruptedWhileWaiting() {
+		configuration.put(TravisRateLimiter.CONF_RATE, "1");
+		configuration.put(TravisRateLimiter.CONF_BURST, "1");
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)));
+		httpServer.start();
+		final var parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+		limiter.acquire(TravisClientRegistry.toKey(parameters), TravisRateLimiter.Priority.INTERACTIVE);
+		final var processor = new TravisCurlProcessor(parameters, limiter, null, null);
+		final var request = new TravisCurlRequest("GET", "http://localhost:8120/repos/ligoj/plugin-vm-google", null);
+
+		// The interrupted request is not sent without a token
+		Thread.currentThread().interrupt();
+		try {
+			Assertions.assertThrows(IllegalStateException.class, () -> processor.process(request));
+			Assertions.assertTrue(Thread.interrupted());
+		} finally {
+			Thread.interrupted();
+			processor.close();
+		}
+		httpServer.verify(0, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+	}
+
+	@Test
+	void validateJobBreaker() throws IOException, URISyntaxException {
+		configuration.put(TravisResponseCache.CONF_CACHE_TTL, "0");
+		configuration.put(TravisCircuitBreaker.CONF_FAILURES, "1");
+		addJobAccess();
+		httpServer.start();
+		final Map<String, String> parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+		parameters.put(TravisPluginResource.PARAMETER_JOB, "ligoj/plugin-vm-google");
+		final var key = TravisClientRegistry.toKey(parameters);
+		Assertions.assertFalse(resource.validateJob(parameters).isStale());
+
+		// Unhealthy node, the last known job is served and the circuit is opened
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_SERVICE_UNAVAILABLE)));
+		final var stale = resource.validateJob(parameters);
+		Assertions.assertTrue(stale.isStale());
+		checkJob(stale, false, "blue");
+		Assertions.assertEquals(TravisCircuitBreaker.State.OPEN, breaker.getState(key));
+
+		// Fail fast without any request
+		Assertions.assertTrue(resource.validateJob(parameters).isStale());
+		httpServer.verify(2, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+		Assertions.assertThrows(BusinessException.class, () -> resource.build(subscription));
+
+		// The half-open probe succeeds, the circuit is closed
+		configuration.put(TravisCircuitBreaker.CONF_OPEN, "0");
+		addConfigAccess();
+		addJobAccess();
+		Assertions.assertFalse(resource.validateJob(parameters).isStale());
+		Assertions.assertEquals(TravisCircuitBreaker.State.CLOSED, breaker.getState(key));
+		httpServer.verify(1, getRequestedFor(urlEqualTo("/config")));
+	}
+
+	@Test
+	void validateJobBreakerProbeFailed() {
+		configuration.put(TravisCircuitBreaker.CONF_FAILURES, "1");
+		configuration.put(TravisCircuitBreaker.CONF_OPEN, "0");
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_SERVICE_UNAVAILABLE)));
+		httpServer.stubFor(get(urlEqualTo("/config")).willReturn(aResponse().withStatus(HttpStatus.SC_SERVICE_UNAVAILABLE)));
+		httpServer.start();
+		final Map<String, String> parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+		parameters.put(TravisPluginResource.PARAMETER_JOB, "ligoj/plugin-vm-google");
+		// No known job, the server error is reported as an unavailable node, not as an unknown job
+		final var failed = Assertions.assertThrows(BusinessException.class, () -> resource.validateJob(parameters));
+		Assertions.assertEquals(TravisPluginResource.TRAVIS_UNAVAILABLE, failed.getMessage());
+
+		// No known job, the probe fails and the call is rejected
+		final var e = Assertions.assertThrows(BusinessException.class, () -> resource.validateJob(parameters));
+		Assertions.assertEquals(TravisPluginResource.TRAVIS_UNAVAILABLE, e.getMessage());
+		Assertions.assertEquals(TravisCircuitBreaker.State.OPEN, breaker.getState(TravisClientRegistry.toKey(parameters)));
+	}
+
+	@Test
+	void validateJobCoalesced() throws Exception {
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withFixedDelay(500).withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/travis/travis-ligoj-vm-google-config.json").getInputStream(),
+						StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		final Map<String, String> parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+		parameters.put(TravisPluginResource.PARAMETER_JOB, "ligoj/plugin-vm-google");
+		final var executor = Executors.newFixedThreadPool(5);
+		try {
+			final var start = new CountDownLatch(1);
+			final List<Future<Job>> jobs = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				jobs.add(executor.submit(() -> {
+					start.await();
+					return resource.validateJob(parameters);
+				}));
+			}
+			start.countDown();
+			for (final var job : jobs) {
+				checkJob(job.get(), false, "blue");
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		httpServer.verify(1, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+	}
+
+	@Test
+	void getResourceCoalescedError() throws Exception {
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withFixedDelay(500).withBody("{}")));
+		httpServer.start();
+
+		final Map<String, String> parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+		final var executor = Executors.newFixedThreadPool(5);
+		try {
+			final var start = new CountDownLatch(1);
+			final List<Future<Object>> results = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				results.add(executor.submit(() -> {
+					start.await();
+					return resource.getResource(parameters, "repos/ligoj/plugin-vm-google", input -> {
+						throw new AssertionError("Unexpected document");
+					});
+				}));
+			}
+			start.countDown();
+
+			// The coalesced lookups are released with the failure of the shared request
+			for (final var result : results) {
+				Assertions.assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void buildNotCoalesced() throws Exception {
+		addJobAccess();
+		httpServer.stubFor(post(urlEqualTo("/builds/274572860/restart")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)));
+		httpServer.start();
+		this.resource.build(subscription);
+		this.resource.build(subscription);
+		httpServer.verify(2, postRequestedFor(urlEqualTo("/builds/274572860/restart")));
+	}
+
+	@Test
+	void validateJobNotModified() throws IOException, URISyntaxException {
+		configuration.put(TravisResponseCache.CONF_CACHE_TTL, "0");
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withHeader("ETag", "\"v1\"").withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/travis/travis-ligoj-vm-google-config.json").getInputStream(),
+						StandardCharsets.UTF_8))));
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google")).withHeader("If-None-Match", equalTo("\"v1\""))
+				.atPriority(1).willReturn(aResponse().withStatus(HttpStatus.SC_NOT_MODIFIED)));
+		httpServer.start();
+
+		final Map<String, String> parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+		parameters.put(TravisPluginResource.PARAMETER_JOB, "ligoj/plugin-vm-google");
+		checkJob(resource.validateJob(parameters), false, "blue");
+		checkJob(resource.validateJob(parameters), false, "blue");
+		httpServer.verify(1, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")).withHeader("If-None-Match",
+				equalTo("\"v1\"")));
+	}
+
 	private void checkJob(final Job job, final boolean building, final String status) {
 		Assertions.assertEquals("ligoj/plugin-vm-google", job.getId());
 		Assertions.assertEquals("ligoj/plugin-vm-google", job.getName());
@@ -176,6 +514,517 @@ class TravisPluginResourceTest extends AbstractServerTest {
 				.checkSubscriptionStatus(subscriptionResource.getParametersNoCheck(subscription));
 		Assertions.assertTrue(nodeStatusWithData.getStatus().isUp());
 		checkJob((Job) nodeStatusWithData.getData().get("job"), false, "blue");
+
+		// The builds are not ingested by the status check
+		Assertions.assertNull(nodeStatusWithData.getData().get("stats"));
+		httpServer.verify(0, getRequestedFor(urlPathMatching("/repos/ligoj/plugin-vm-google/builds.*")));
+	}
+
+	@Test
+	void getStatuses() throws IOException {
+		addJobAccess();
+		httpServer.start();
+
+		final Map<Integer, Job> jobs = resource.getStatuses(List.of(subscription, subscription));
+		Assertions.assertEquals(1, jobs.size());
+		checkJob(jobs.get(subscription), false, "blue");
+	}
+
+	@Test
+	void getStatusesInvalidSubscription() throws IOException {
+		addJobAccess();
+		httpServer.start();
+
+		// The unknown subscription is left out
+		final Map<Integer, Job> jobs = resource.getStatuses(List.of(-1, subscription));
+		Assertions.assertEquals(1, jobs.size());
+		checkJob(jobs.get(subscription), false, "blue");
+		Assertions.assertTrue(resource.getStatuses(List.of(-1)).isEmpty());
+	}
+
+	@Test
+	void getCompactStatuses() throws IOException {
+		addJobAccessBuilding();
+		httpServer.start();
+
+		final var statuses = resource.getCompactStatuses(List.of(subscription, subscription));
+		Assertions.assertArrayEquals(new int[]{subscription}, statuses.getSubscriptions());
+		Assertions.assertArrayEquals(new String[]{"ligoj/plugin-vm-google"}, statuses.getJobs());
+		Assertions.assertArrayEquals(new int[]{0}, statuses.getJob());
+		Assertions.assertArrayEquals(new byte[]{JobStatuses.YELLOW | JobStatuses.BUILDING}, statuses.getStatus());
+	}
+
+	@Test
+	void toCode() {
+		final var job = new Job();
+		Assertions.assertEquals(JobStatuses.DISABLED, JobStatuses.toCode(job));
+		job.setStatus("red");
+		job.setStale(true);
+		Assertions.assertEquals(JobStatuses.RED | JobStatuses.STALE, JobStatuses.toCode(job));
+	}
+
+	@Test
+	void getStatusesSameOwner() throws IOException {
+		addJobAccess();
+		httpServer.stubFor(get(urlEqualTo("/repos?owner_name=ligoj")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withBody(IOUtils.toString(new ClassPathResource("mock-server/travis/travis-find-job.json").getInputStream(),
+						StandardCharsets.UTF_8))));
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-aws")).willReturn(aResponse().withStatus(HttpStatus.SC_NOT_FOUND)));
+		httpServer.start();
+		final int jupiter2 = getSubscription("Jupiter2");
+		setJob(jupiter2, "ligoj/plugin-vm-aws");
+
+		final Map<Integer, Job> jobs = resource.getStatuses(List.of(subscription, jupiter2));
+		Assertions.assertEquals(2, jobs.size());
+		checkJob(jobs.get(subscription), false, "blue");
+		Assertions.assertEquals("ligoj/plugin-vm-aws", jobs.get(jupiter2).getId());
+		Assertions.assertEquals("blue", jobs.get(jupiter2).getStatus());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void getMetrics() throws IOException {
+		addJobAccess();
+		httpServer.start();
+		resource.getStatuses(List.of(subscription));
+		resource.getStatuses(List.of(subscription));
+
+		final var metrics = (Map<String, Object>) resource.getMetrics().get("pool");
+		Assertions.assertTrue((int) metrics.get("clients") >= 1);
+		final var pool = (Map<String, Object>) metrics.entrySet().stream()
+				.filter(e -> e.getKey().startsWith("http://localhost:8120|")).findFirst().orElseThrow().getValue();
+		Assertions.assertEquals(0, pool.get("active"));
+		Assertions.assertTrue((long) pool.get("requests") >= 2);
+	}
+
+	@Test
+	void evictIdleInUse() {
+		configuration.put(TravisClientRegistry.CONF_POOL_IDLE, "-1");
+		final var parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+		final var key = TravisClientRegistry.toKey(parameters);
+		final var prefix = key.substring(0, key.length() - 56);
+
+		// The client in use is kept
+		Assertions.assertTrue(clients.execute(parameters, processor -> {
+			clients.evictIdle();
+			return clients.getMetrics().containsKey(prefix);
+		}));
+
+		// The idle client is closed
+		clients.evictIdle();
+		Assertions.assertFalse(clients.getMetrics().containsKey(prefix));
+	}
+
+	@Test
+	void metrics() throws IOException, URISyntaxException {
+		final var registry = new SimpleMeterRegistry();
+		final var previous = metrics.getRegistry();
+		ReflectionTestUtils.setField(metrics, "registry", registry);
+		try {
+			addJobAccess();
+			httpServer.start();
+			resource.findById("service:build:travis:bpr", "ligoj/plugin-vm-google");
+			resource.findById("service:build:travis:bpr", "ligoj/plugin-vm-google");
+
+			final var request = registry.get("travis.request").tags("node", "http://localhost:8120", "operation", "repo",
+					"status", "2xx", "outcome", TravisMetrics.SUCCESS).timer();
+			Assertions.assertEquals(1, request.count());
+			Assertions.assertTrue(registry.get("travis.response.size").summary().totalAmount() > 0);
+			Assertions.assertEquals(1, registry.get("travis.parse").timer().count());
+			Assertions.assertEquals(2, registry.get("travis.operation")
+					.tags("operation", "findById", "outcome", TravisMetrics.SUCCESS).timer().count());
+			Assertions.assertEquals(1, registry.get("travis.cache").tags("result", "hit").counter().count());
+			Assertions.assertEquals(1, registry.get("travis.cache").tags("result", "miss").counter().count());
+		} finally {
+			ReflectionTestUtils.setField(metrics, "registry", previous);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void getStatusesFanOutCancelled() throws IOException {
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withFixedDelay(2000).withBody(IOUtils.toString(new ClassPathResource("mock-server/travis/travis-ligoj-vm-google-config.json")
+						.getInputStream(), StandardCharsets.UTF_8))));
+		httpServer.start();
+		configuration.put(TravisFanOut.CONF_TIMEOUT, "0");
+
+		// The deadline is reached, the running call is cancelled and the job is not resolved
+		final long start = System.currentTimeMillis();
+		Assertions.assertTrue(resource.getStatuses(List.of(subscription)).isEmpty());
+
+		// The partial result is returned without waiting for the blocked call, which keeps its permit until its end
+		Assertions.assertTrue(System.currentTimeMillis() - start < 1500);
+		final var metrics = (Map<String, Object>) resource.getMetrics().get("fanout");
+		final var node = (Map<String, Object>) metrics.entrySet().stream()
+				.filter(e -> e.getKey().startsWith("http://localhost:8120|")).findFirst().orElseThrow().getValue();
+		Assertions.assertTrue((int) node.get("available") >= 7);
+	}
+
+	@Test
+	void importJobs() throws IOException {
+		addJobAccess();
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-aws")).willReturn(aResponse().withStatus(HttpStatus.SC_NOT_FOUND)));
+		httpServer.start();
+		final int project = getProject("Jupiter2");
+
+		final var rows = resource.importJobs("service:build:travis:bpr", List.of(newImport(project, "ligoj/plugin-vm-google"),
+				newImport(project, "ligoj/plugin-vm-aws"), newImport(null, "ligoj/plugin-vm-google"), newImport(project, null)));
+		Assertions.assertEquals(4, rows.size());
+		Assertions.assertNull(rows.getFirst().getError());
+		Assertions.assertEquals("ligoj/plugin-vm-google",
+				subscriptionResource.getParameters(rows.getFirst().getSubscription()).get(TravisPluginResource.PARAMETER_JOB));
+		Assertions.assertEquals("travis-job", rows.get(1).getError());
+		Assertions.assertNull(rows.get(1).getSubscription());
+		Assertions.assertEquals("project", rows.get(2).getError());
+		Assertions.assertEquals("travis-job", rows.get(3).getError());
+
+		// The job has been fetched once
+		httpServer.verify(1, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+	}
+
+	@Test
+	void importJobsCsv() throws IOException {
+		addJobAccess();
+		httpServer.start();
+		final int project = getProject("Jupiter2");
+
+		final var rows = resource.importJobsCsv("service:build:travis:bpr",
+				"project;job\n" + project + ";ligoj/plugin-vm-google\n\n" + project + ",ligoj/plugin-vm-google\n");
+		Assertions.assertEquals(2, rows.size());
+		Assertions.assertNotNull(rows.getFirst().getSubscription());
+		Assertions.assertNotNull(rows.get(1).getSubscription());
+	}
+
+	private int getProject(final String name) {
+		return em.createQuery("SELECT id FROM Project WHERE name=:name", Integer.class).setParameter("name", name)
+				.getSingleResult();
+	}
+
+	private JobImport newImport(final Integer project, final String job) {
+		final var row = new JobImport();
+		row.setProject(project);
+		row.setJob(job);
+		return row;
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void getStatusesRefreshed() throws IOException {
+		addJobAccess();
+		httpServer.start();
+		final Map<String, String> parameters = subscriptionResource.getParameters(subscription);
+		Assertions.assertNull(refresher.get(parameters));
+
+		// The polled job is registered, then refreshed in the background
+		resource.getStatuses(List.of(subscription));
+		Assertions.assertNull(refresher.get(parameters));
+		refresher.poll(TravisClientRegistry.toKey(parameters) + "|ligoj/plugin-vm-google");
+		checkJob(refresher.get(parameters), false, "blue");
+
+		// The refreshed status is served without request
+		checkJob(resource.getStatuses(List.of(subscription)).get(subscription), false, "blue");
+		httpServer.verify(1, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+		final var metrics = (Map<String, Object>) resource.getMetrics().get("refresh");
+		Assertions.assertEquals(1, metrics.get("jobs"));
+		Assertions.assertEquals(0L, metrics.get("failures"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void jobState() throws Exception {
+		addJobAccess();
+		httpServer.start();
+		final Map<String, String> parameters = subscriptionResource.getParameters(subscription);
+
+		// The fetched state is written behind
+		resource.getStatuses(List.of(subscription));
+		Assertions.assertEquals(0, jobStateRepository.count());
+		jobStates.flush();
+		final var state = jobStateRepository.findAllBySubscriptionIdIn(List.of(subscription)).getFirst();
+		Assertions.assertEquals("ligoj/plugin-vm-google", state.getJob());
+		Assertions.assertEquals("blue", state.getStatus());
+		Assertions.assertFalse(state.isBuilding());
+
+		// Once restarted, the persisted state is served without request
+		cache.clear();
+		refresher.clear();
+		jobStates.clear();
+		jobStates.load((p, s) -> {});
+		checkJob(resource.getStatuses(List.of(subscription)).get(subscription), false, "blue");
+		httpServer.verify(1, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+		Assertions.assertEquals(1L, ((Map<String, Object>) resource.getMetrics().get("state")).get("restored"));
+
+		// A fresh fetch replaces the restored state
+		resource.validateJob(parameters);
+		Assertions.assertNull(jobStates.get(parameters));
+		httpServer.verify(2, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+
+		// The state is deleted with the subscription
+		resource.delete(subscription, false);
+		Assertions.assertEquals(0, jobStateRepository.count());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void jobStateCacheHit() throws Exception {
+		addJobAccess();
+		httpServer.start();
+		final Map<String, String> parameters = subscriptionResource.getParameters(subscription);
+		resource.validateJob(parameters);
+		jobStates.flush();
+		Assertions.assertEquals(0, ((Map<String, Object>) resource.getMetrics().get("state")).get("pending"));
+
+		// A job served by the cache is not written again
+		resource.validateJob(parameters);
+		Assertions.assertEquals(0, ((Map<String, Object>) resource.getMetrics().get("state")).get("pending"));
+
+		// A job fetched again is written
+		cache.clear();
+		resource.validateJob(parameters);
+		Assertions.assertEquals(1, ((Map<String, Object>) resource.getMetrics().get("state")).get("pending"));
+		httpServer.verify(2, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+	}
+
+	@Test
+	void cacheMatches() {
+		Assertions.assertTrue(TravisResponseCache.matches("/repos/ligoj/plugin-vm", "ligoj/plugin-vm"));
+		Assertions.assertTrue(TravisResponseCache.matches("/repos/ligoj/plugin-vm/builds?after_number=9", "ligoj/plugin-vm"));
+		Assertions.assertTrue(TravisResponseCache.matches("/repo/ligoj%2Fplugin-vm?representation=minimal", "ligoj/plugin-vm"));
+		Assertions.assertTrue(TravisResponseCache.matches("repos?owner_name=ligoj", "ligoj/plugin-vm"));
+
+		// The jobs sharing the same prefix and the other listings are kept
+		Assertions.assertFalse(TravisResponseCache.matches("/repos/ligoj/plugin-vm-google", "ligoj/plugin-vm"));
+		Assertions.assertFalse(TravisResponseCache.matches("/repo/ligoj%2Fplugin-vm-aws/builds", "ligoj/plugin-vm"));
+		Assertions.assertFalse(TravisResponseCache.matches("repos?owner_name=ligoj2", "ligoj/plugin-vm"));
+		Assertions.assertFalse(TravisResponseCache.matches("repos?search=plugin-vm&orderBy=name", "ligoj/plugin-vm"));
+	}
+
+	@Test
+	void refreshInterval() {
+		final long now = System.currentTimeMillis();
+		final var job = new Job();
+		job.setBuilding(true);
+		Assertions.assertEquals(30_000, refresher.toInterval(job, now, now));
+		job.setBuilding(false);
+		Assertions.assertEquals(300_000, refresher.toInterval(job, now - 3_600_000, now));
+		Assertions.assertEquals(86_400_000 / TravisRefresher.IDLE_RATIO, refresher.toInterval(job, now - 86_400_000, now));
+		Assertions.assertEquals(3_600_000, refresher.toInterval(job, now - 30L * 86_400_000, now));
+	}
+
+	@Test
+	void getStatusesNotFound() {
+		httpServer.start();
+		Assertions.assertTrue(resource.getStatuses(List.of(subscription)).isEmpty());
+	}
+
+	/**
+	 * Attach the given Travis job to a subscription.
+	 */
+	private void setJob(final int subscription, final String job) {
+		final Parameter parameter = new Parameter();
+		parameter.setId(TravisPluginResource.PARAMETER_JOB);
+		final ParameterValue parameterValue = new ParameterValue();
+		parameterValue.setParameter(parameter);
+		parameterValue.setData(job);
+		parameterValue.setSubscription(em.find(Subscription.class, subscription));
+		em.persist(parameterValue);
+		em.flush();
+	}
+
+	@Test
+	void webhook() throws Exception {
+		final var keys = addWebhookConfig();
+		httpServer.start();
+		final var payload = "{\"id\":274572861,\"state\":\"started\",\"repository\":{\"name\":\"plugin-vm-google\",\"owner_name\":\"ligoj\"}}";
+		resource.webhook("service:build:travis:bpr", payload, sign(keys, payload));
+
+		// The pushed status is served without polling
+		final var job = (Job) resource.checkSubscriptionStatus(subscriptionResource.getParametersNoCheck(subscription)).getData().get("job");
+		Assertions.assertEquals("ligoj/plugin-vm-google", job.getId());
+		Assertions.assertEquals("yellow", job.getStatus());
+		Assertions.assertTrue(job.isBuilding());
+		Assertions.assertEquals("274572861", job.getLastBuildId());
+		httpServer.verify(0, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+	}
+
+	@Test
+	void webhookQuiet() throws Exception {
+		final var keys = addWebhookConfig();
+		addJobAccess();
+		httpServer.start();
+		configuration.put(TravisStatusStore.CONF_QUIET, "-1");
+		final var payload = "{\"id\":274572861,\"state\":\"started\",\"repository\":{\"name\":\"plugin-vm-google\",\"owner_name\":\"ligoj\"}}";
+		resource.webhook("service:build:travis:bpr", payload, sign(keys, payload));
+
+		// The job is quiet, so polled again
+		final var job = (Job) resource.checkSubscriptionStatus(subscriptionResource.getParametersNoCheck(subscription)).getData().get("job");
+		checkJob(job, false, "blue");
+	}
+
+	@Test
+	void webhookThenRestart() throws Exception {
+		final var keys = addWebhookConfig();
+		addJobAccess();
+		httpServer.stubFor(post(urlEqualTo("/builds/274572860/restart")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)));
+		httpServer.start();
+		final var payload = "{\"id\":274572861,\"state\":\"started\",\"repository\":{\"name\":\"plugin-vm-google\",\"owner_name\":\"ligoj\"}}";
+		resource.webhook("service:build:travis:bpr", payload, sign(keys, payload));
+		Assertions.assertEquals("yellow", resource.getStatuses(List.of(subscription)).get(subscription).getStatus());
+
+		// The restart drops the pushed status, the next read polls the job again
+		resource.build(subscription);
+		checkJob(resource.getStatuses(List.of(subscription)).get(subscription), false, "blue");
+	}
+
+	@Test
+	void deleteEvictsPushedStatus() throws Exception {
+		final var keys = addWebhookConfig();
+		addJobAccess();
+		httpServer.start();
+		final var payload = "{\"id\":274572861,\"state\":\"started\",\"repository\":{\"name\":\"plugin-vm-google\",\"owner_name\":\"ligoj\"}}";
+		resource.webhook("service:build:travis:bpr", payload, sign(keys, payload));
+		resource.delete(subscription, false);
+		final var parameters = subscriptionResource.getParametersNoCheck(subscription);
+		Assertions.assertNull(statuses.get(parameters, "ligoj/plugin-vm-google"));
+	}
+
+	@Test
+	void events() throws Exception {
+		final var keys = addWebhookConfig();
+		addJobAccess();
+		httpServer.start();
+		final var sse = mock(Sse.class);
+		final var sink = mock(SseEventSink.class);
+		when(sse.newEvent(eq("status"), anyString())).thenReturn(mock(OutboundSseEvent.class));
+		when(sink.send(any())).thenReturn(CompletableFuture.completedFuture(null));
+		resource.events(List.of(subscription), sink, sse);
+		Assertions.assertEquals(1, broadcaster.size());
+
+		// Initial status
+		verify(sse, timeout(5000)).newEvent(eq("status"), contains("\"status\":\"blue\""));
+
+		// Unchanged status is not sent again
+		final var key = broadcaster.toKey(subscriptionResource.getParametersNoCheck(subscription), "ligoj/plugin-vm-google");
+		broadcaster.poll(key);
+		verify(sse, times(1)).newEvent(eq("status"), anyString());
+
+		// Pushed status change
+		final var payload = "{\"id\":274572861,\"state\":\"started\",\"repository\":{\"name\":\"plugin-vm-google\",\"owner_name\":\"ligoj\"}}";
+		resource.webhook("service:build:travis:bpr", payload, sign(keys, payload));
+		verify(sse).newEvent(eq("status"), contains("\"status\":\"yellow\""));
+
+		// Closed listener stops the poll
+		when(sink.isClosed()).thenReturn(true);
+		broadcaster.poll(key);
+		Assertions.assertEquals(0, broadcaster.size());
+	}
+
+	@Test
+	void eventsClosedAtOnce() throws Exception {
+		final var sink = mock(SseEventSink.class);
+		when(sink.isClosed()).thenReturn(true);
+
+		// The first poll drops the channel of a listener closed before its registration completes
+		for (int i = 0; i < 20; i++) {
+			broadcaster.register("key" + i, subscription, Job::new, sink, mock(Sse.class));
+		}
+		for (int i = 0; i < 50 && broadcaster.size() > 0; i++) {
+			Thread.sleep(100);
+		}
+		Assertions.assertEquals(0, broadcaster.size());
+	}
+
+	@Test
+	void eventsInvalidSubscription() throws Exception {
+		addJobAccess();
+		httpServer.start();
+		final var sse = mock(Sse.class);
+		final var sink = mock(SseEventSink.class);
+		when(sse.newEvent(eq("status"), anyString())).thenReturn(mock(OutboundSseEvent.class));
+		when(sink.send(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+		// The unknown subscription is ignored
+		resource.events(List.of(subscription, -1), sink, sse);
+		Assertions.assertEquals(1, broadcaster.size());
+		verify(sink, times(0)).close();
+
+		// No remaining subscription
+		final var other = mock(SseEventSink.class);
+		resource.events(List.of(-1), other, sse);
+		verify(other).close();
+	}
+
+	@Test
+	void webhookInvalidSignature() throws Exception {
+		final var keys = addWebhookConfig();
+		httpServer.start();
+		final var payload = "{\"id\":1,\"state\":\"passed\",\"repository\":{\"name\":\"plugin-vm-google\",\"owner_name\":\"ligoj\"}}";
+		final var signature = sign(keys, payload);
+		Assertions.assertThrows(ForbiddenException.class, () -> resource.webhook("service:build:travis:bpr", payload + " ", signature));
+		Assertions.assertThrows(ForbiddenException.class, () -> resource.webhook("service:build:travis:bpr", payload, "-invalid-"));
+		Assertions.assertThrows(ForbiddenException.class, () -> resource.webhook("service:build:travis:bpr", payload, null));
+	}
+
+	@Test
+	void webhookInvalidPayload() throws Exception {
+		final var keys = addWebhookConfig();
+		httpServer.start();
+		final var noRepository = "{\"id\":1,\"state\":\"passed\"}";
+		final var noRepositorySignature = sign(keys, noRepository);
+		MatcherUtil.assertThrows(Assertions.assertThrows(ValidationJsonException.class,
+				() -> resource.webhook("service:build:travis:bpr", noRepository, noRepositorySignature)), "payload",
+				"travis-notification");
+		final var noState = "{\"id\":1,\"repository\":{\"name\":\"plugin-vm-google\",\"owner_name\":\"ligoj\"}}";
+		final var noStateSignature = sign(keys, noState);
+		MatcherUtil.assertThrows(Assertions.assertThrows(ValidationJsonException.class,
+				() -> resource.webhook("service:build:travis:bpr", noState, noStateSignature)), "payload",
+				"travis-notification");
+	}
+
+	@Test
+	void webhookIndexed() throws Exception {
+		final var keys = addWebhookConfig();
+		httpServer.start();
+		final var key = TravisClientRegistry.toKey(pvResource.getNodeParameters("service:build:travis:bpr"));
+		final var indexed = new Job();
+		indexed.setId("ligoj/plugin-vm-google");
+		indexed.setName("ligoj/plugin-vm-google");
+		indexed.setDescription("Google Compute Engine");
+		indexed.setStatus("blue");
+		index.load(key, offset -> List.of(indexed)).get(5, TimeUnit.SECONDS);
+		final var payload = "{\"id\":274572861,\"state\":\"started\",\"repository\":{\"name\":\"plugin-vm-google\",\"owner_name\":\"ligoj\"}}";
+		resource.webhook("service:build:travis:bpr", payload, sign(keys, payload));
+
+		// The notified status is merged, the indexed description is kept
+		final var job = index.find(key, "google", 10).getFirst();
+		Assertions.assertEquals("yellow", job.getStatus());
+		Assertions.assertTrue(job.isBuilding());
+		Assertions.assertEquals("Google Compute Engine", job.getDescription());
+	}
+
+	@Test
+	void webhookNoConfig() {
+		httpServer.start();
+		Assertions.assertThrows(ForbiddenException.class, () -> resource.webhook("service:build:travis:bpr", "{}", "AA=="));
+	}
+
+	private KeyPair addWebhookConfig() throws GeneralSecurityException {
+		final var generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		final var keys = generator.generateKeyPair();
+		final var pem = "-----BEGIN PUBLIC KEY-----\\n" + Base64.getEncoder().encodeToString(keys.getPublic().getEncoded())
+				+ "\\n-----END PUBLIC KEY-----";
+		httpServer.stubFor(get(urlEqualTo("/config")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withBody("{\"config\":{\"notifications\":{\"webhook\":{\"public_key\":\"" + pem + "\"}}}}")));
+		return keys;
+	}
+
+	private String sign(final KeyPair keys, final String payload) throws GeneralSecurityException {
+		final var signer = Signature.getInstance("SHA1withRSA");
+		signer.initSign(keys.getPrivate());
+		signer.update(payload.getBytes(StandardCharsets.UTF_8));
+		return Base64.getEncoder().encodeToString(signer.sign());
 	}
 
 	private void addJobAccess() throws IOException {
@@ -214,6 +1063,135 @@ class TravisPluginResourceTest extends AbstractServerTest {
 		Assertions.assertEquals("blue", jobs.get(1).getStatus());
 	}
 
+	@Test
+	void findAllByNameStream() throws Exception {
+		addSearchPage(0, "mock-server/travis/travis-find-job.json");
+		httpServer.stubFor(get(urlPathEqualTo("/repos")).withQueryParam("offset", equalTo("5"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody("{\"repos\":[]}")));
+		httpServer.start();
+
+		final var output = new ByteArrayOutputStream();
+		resource.findAllByNameStream("service:build:travis:bpr", "ligoj", 5, 100).write(output);
+		final var lines = output.toString(StandardCharsets.UTF_8).split("\n");
+		Assertions.assertEquals(5, lines.length);
+		Assertions.assertTrue(lines[1].contains("\"ligoj/plugin-vm-aws\""));
+		httpServer.verify(2, getRequestedFor(urlPathEqualTo("/repos")));
+	}
+
+	@Test
+	void findAllByNameStreamMax() throws Exception {
+		addSearchPage(0, "mock-server/travis/travis-find-job.json");
+		httpServer.start();
+
+		final var output = new ByteArrayOutputStream();
+		resource.findAllByNameStream("service:build:travis:bpr", "ligoj", 5, 3).write(output);
+		Assertions.assertEquals(3, output.toString(StandardCharsets.UTF_8).split("\n").length);
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/repos")));
+	}
+
+	private void addSearchPage(final int offset, final String file) throws IOException {
+		httpServer.stubFor(get(urlPathEqualTo("/repos")).withQueryParam("search", equalTo("ligoj"))
+				.withQueryParam("offset", equalTo(String.valueOf(offset))).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+						.withBody(IOUtils.toString(new ClassPathResource(file).getInputStream(), StandardCharsets.UTF_8))));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void findJobsByNameIndexed() throws Exception {
+		addIndexPage();
+		httpServer.start();
+		final var key = TravisClientRegistry.toKey(pvResource.getNodeParameters("service:build:travis:bpr"));
+
+		// First search is remote and loads the index
+		Assertions.assertEquals(0, resource.findAllByName("service:build:travis:bpr", "ligoj").size());
+		index.load(key, offset -> List.of()).get(5, TimeUnit.SECONDS);
+
+		// Prefix, token and fuzzy matches from the index
+		final List<Job> jobs = resource.findAllByName("service:build:travis:bpr", "ligoj/plugin-vm");
+		Assertions.assertEquals(List.of("ligoj/plugin-vm", "ligoj/plugin-vm-aws"), jobs.stream().map(Job::getId).toList());
+		Assertions.assertEquals("ligoj/plugin-vm-aws", resource.findAllByName("service:build:travis:bpr", "aws").getFirst().getId());
+		Assertions.assertEquals("ligoj/plugin-build-travis",
+				resource.findAllByName("service:build:travis:bpr", "travos").getFirst().getId());
+		Assertions.assertEquals("LoliGothick/Cranberries",
+				resource.findAllByName("service:build:travis:bpr", "Cranberries").getFirst().getId());
+		Assertions.assertTrue(resource.findAllByName("service:build:travis:bpr", "nothing").isEmpty());
+		Assertions.assertEquals(5, ((Map<String, Map<String, Object>>) resource.getMetrics().get("index"))
+				.get(key.substring(0, key.length() - 56)).get("jobs"));
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/repos")).withQueryParam("offset", equalTo("0")));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void findJobsByNameTruncatedIndex() throws Exception {
+		configuration.put(TravisSearchIndex.CONF_INDEX_MAX, "2");
+		addIndexPage();
+		addRemoteSearch("remote");
+		httpServer.start();
+		final var key = TravisClientRegistry.toKey(pvResource.getNodeParameters("service:build:travis:bpr"));
+		resource.findAllByName("service:build:travis:bpr", "remote");
+		index.load(key, offset -> List.of()).get(5, TimeUnit.SECONDS);
+		Assertions.assertTrue((Boolean) ((Map<String, Map<String, Object>>) resource.getMetrics().get("index"))
+				.get(key.substring(0, key.length() - 56)).get("truncated"));
+
+		// The truncated index may miss some repositories, so the search is still remote
+		Assertions.assertEquals("ligoj/remote-only",
+				resource.findAllByName("service:build:travis:bpr", "remote").getFirst().getId());
+	}
+
+	@Test
+	void findJobsByNameEmptyIndex() throws Exception {
+		addRemoteSearch("remote");
+		httpServer.start();
+		final var key = TravisClientRegistry.toKey(pvResource.getNodeParameters("service:build:travis:bpr"));
+		index.load(key, offset -> List.of()).get(5, TimeUnit.SECONDS);
+
+		// The empty index does not answer the search
+		Assertions.assertNull(index.find(key, "remote", 10));
+		Assertions.assertEquals("ligoj/remote-only",
+				resource.findAllByName("service:build:travis:bpr", "remote").getFirst().getId());
+
+		// The found repository is added to the index
+		Assertions.assertEquals("ligoj/remote-only", index.find(key, "remote", 10).getFirst().getId());
+	}
+
+	@Test
+	void findJobsByNameNewRepository() throws Exception {
+		addIndexPage();
+		addRemoteSearch("remote");
+		httpServer.start();
+		final var key = TravisClientRegistry.toKey(pvResource.getNodeParameters("service:build:travis:bpr"));
+		resource.findAllByName("service:build:travis:bpr", "ligoj");
+		index.load(key, offset -> List.of()).get(5, TimeUnit.SECONDS);
+
+		// A repository created since the last build is not indexed, so the search is remote
+		Assertions.assertTrue(index.find(key, "remote", 10).isEmpty());
+		Assertions.assertEquals("ligoj/remote-only",
+				resource.findAllByName("service:build:travis:bpr", "remote").getFirst().getId());
+
+		// Then this repository is found in the index, along the indexed ones
+		cache.clear();
+		Assertions.assertEquals("ligoj/remote-only",
+				resource.findAllByName("service:build:travis:bpr", "remote").getFirst().getId());
+		Assertions.assertEquals(2, resource.findAllByName("service:build:travis:bpr", "ligoj/plugin-vm").size());
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/repos")).withQueryParam("search", equalTo("remote")));
+	}
+
+	private void addRemoteSearch(final String criteria) {
+		httpServer.stubFor(get(urlPathEqualTo("/repos")).withQueryParam("search", equalTo(criteria))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody("{\"repos\":[{\"slug\":\"ligoj/remote-only\"}]}")));
+	}
+
+	/**
+	 * Stub the index loading: the user of the token, then the repositories this user is a member of.
+	 */
+	private void addIndexPage() throws IOException {
+		httpServer.stubFor(get(urlEqualTo("/users")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withBody("{\"user\":{\"id\":1,\"login\":\"ligoj\"}}")));
+		httpServer.stubFor(get(urlPathEqualTo("/repos")).withQueryParam("member", equalTo("ligoj"))
+				.withQueryParam("offset", equalTo("0")).willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/travis/travis-find-job.json").getInputStream(), StandardCharsets.UTF_8))));
+	}
+
 	@Test
 	void findJobsByNameAuthFailed() throws Exception {
 		// All queries would fail
@@ -229,6 +1207,19 @@ class TravisPluginResourceTest extends AbstractServerTest {
 		checkJob(resource.findById("service:build:travis:bpr", "ligoj/plugin-vm-google"), true, "yellow");
 	}
 
+	@Test
+	void findJobsByIdSkipUnusedProperties() throws Exception {
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withBody("{\"meta\":{\"slug\":\"any\"},\"repo\":{\"id\":1,\"slug\":\"ligoj/plugin-vm-google\","
+						+ "\"owner\":{\"slug\":\"any\",\"tags\":[{\"description\":\"any\"}]},\"last_build_id\":274572860,"
+						+ "\"description\":\"Ligoj plugin for Google instance life cycle management : scheduled ON/OFF\","
+						+ "\"last_build_state\":\"started\",\"active\":true}}")));
+		httpServer.start();
+		final var job = resource.findById("service:build:travis:bpr", "ligoj/plugin-vm-google");
+		checkJob(job, true, "yellow");
+		Assertions.assertEquals("274572860", job.getLastBuildId());
+	}
+
 	@Test
 	void findJobsByIdFail() {
 		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/any"))
@@ -271,6 +1262,436 @@ class TravisPluginResourceTest extends AbstractServerTest {
 		this.resource.build(subscription);
 	}
 
+	@Test
+	void buildAll() throws Exception {
+		addJobAccess();
+		httpServer.stubFor(post(urlEqualTo("/builds/274572860/restart")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)));
+		httpServer.start();
+		final int jupiter2 = getSubscription("Jupiter2");
+		setJob(jupiter2, "ligoj/plugin-vm-google");
+
+		final var restarts = resource.buildAll(null, List.of(subscription, jupiter2, -1));
+		Assertions.assertEquals(3, restarts.size());
+		Assertions.assertEquals("274572860", restarts.getFirst().getBuild());
+		Assertions.assertNull(restarts.getFirst().getError());
+		Assertions.assertEquals("274572860", restarts.get(1).getBuild());
+		Assertions.assertEquals("subscription", restarts.get(2).getError());
+
+		// The shared job is restarted once
+		httpServer.verify(1, postRequestedFor(urlEqualTo("/builds/274572860/restart")));
+	}
+
+	@Test
+	void buildAllProject() throws Exception {
+		addJobAccess();
+		httpServer.stubFor(post(urlEqualTo("/builds/274572860/restart")).willReturn(aResponse().withStatus(HttpStatus.SC_BAD_GATEWAY)));
+		httpServer.start();
+
+		final var restarts = resource.buildAll(getProject("Jupiter"), null);
+		Assertions.assertEquals(1, restarts.size());
+		Assertions.assertEquals(subscription, restarts.getFirst().getSubscription());
+		Assertions.assertEquals("ligoj/plugin-vm-google", restarts.getFirst().getJob());
+		Assertions.assertNull(restarts.getFirst().getBuild());
+		Assertions.assertEquals("travis-restart", restarts.getFirst().getError());
+	}
+
+	@Test
+	void validateJobV3() throws IOException, URISyntaxException {
+		addRepositoryV3();
+		httpServer.start();
+
+		final var job = resource.validateJob(newParametersV3());
+		checkJob(job, false, "blue");
+		Assertions.assertEquals("274572860", job.getLastBuildId());
+	}
+
+	@Test
+	void validateJobV2SlugLikeV3() throws IOException, URISyntaxException {
+		httpServer.stubFor(get(urlEqualTo("/repos/repo/build")).withoutHeader("Travis-API-Version")
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/travis/travis-ligoj-vm-google-config.json").getInputStream(), StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		// The API version is the node's one, not guessed from the path
+		final Map<String, String> parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+		parameters.put(TravisPluginResource.PARAMETER_JOB, "repo/build");
+		checkJob(resource.validateJob(parameters), false, "blue");
+	}
+
+	@Test
+	void buildV3() throws Exception {
+		addRepositoryV3();
+		httpServer.stubFor(post(urlEqualTo("/build/274572860/restart")).withHeader("Travis-API-Version", equalTo("3"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_ACCEPTED)));
+		httpServer.start();
+
+		final var parameters = newParametersV3();
+		Assertions.assertTrue(resource.build(parameters, resource.validateJob(parameters)));
+	}
+
+	@Test
+	void parseV3() throws IOException {
+		final var parserV3 = new TravisJobParser();
+		ReflectionTestUtils.setField(parserV3, "objectMapper", new ObjectMapper());
+		final var builds = parserV3.parseBuilds(new ClassPathResource("mock-server/travis/travis-v3-builds.json").getInputStream());
+		Assertions.assertEquals(2, builds.size());
+		Assertions.assertTrue(builds.getFirst().isBuilding());
+		Assertions.assertEquals("2017-09-13T07:58:40Z", builds.getFirst().getCommittedAt());
+		Assertions.assertEquals("78512001", builds.get(1).getCommitId());
+		Assertions.assertEquals(139L, builds.get(1).getDuration());
+
+		final var build = parserV3.parseBuild(new ClassPathResource("mock-server/travis/travis-v3-build.json").getInputStream());
+		Assertions.assertEquals("ligoj/plugin-vm-google", build.getRepositorySlug());
+		Assertions.assertEquals(List.of("274572861"), build.getJobIds());
+		Assertions.assertEquals("ligoj/plugin-vm-google", build.getJobs().getFirst().getRepositorySlug());
+		Assertions.assertEquals("blue", build.getJobs().getFirst().getStatus());
+	}
+
+	private Map<String, String> newParametersV3() {
+		final Map<String, String> parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+		parameters.put(TravisPluginResource.PARAMETER_JOB, "ligoj/plugin-vm-google");
+		parameters.put(TravisPluginResource.PARAMETER_API_VERSION, "3");
+		return parameters;
+	}
+
+	private void addRepositoryV3() throws IOException {
+		httpServer.stubFor(get(urlEqualTo("/repo/ligoj%2Fplugin-vm-google?representation=minimal"
+				+ "&include=repository.description,repository.current_build")).withHeader("Travis-API-Version", equalTo("3"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/travis/travis-v3-repository.json").getInputStream(), StandardCharsets.UTF_8))));
+	}
+
+	@Test
+	void findBuilds() throws Exception {
+		addResource("/repos/ligoj/plugin-vm-google/builds", "mock-server/travis/travis-builds.json");
+		httpServer.start();
+		final var builds = resource.findBuilds(subscription);
+		Assertions.assertEquals(2, builds.size());
+		final var build = builds.getFirst();
+		Assertions.assertEquals("274572861", build.getId());
+		Assertions.assertEquals("10", build.getNumber());
+		Assertions.assertTrue(build.isBuilding());
+		Assertions.assertNull(build.getDuration());
+		Assertions.assertEquals(List.of("274572862"), build.getJobIds());
+		Assertions.assertEquals("blue", builds.get(1).getStatus());
+		Assertions.assertEquals(139L, builds.get(1).getDuration());
+		Assertions.assertEquals(List.of("274572858", "274572859"), builds.get(1).getJobIds());
+	}
+
+	@Test
+	void findBuild() throws Exception {
+		addResource("/repos/ligoj/plugin-vm-google/builds/274572860", "mock-server/travis/travis-build.json");
+		httpServer.start();
+		final var build = resource.findBuild(subscription, 274572860);
+		Assertions.assertEquals("9", build.getNumber());
+		Assertions.assertEquals("push", build.getEventType());
+		Assertions.assertFalse(build.isBuilding());
+		Assertions.assertEquals(2, build.getJobs().size());
+		Assertions.assertEquals("9.2", build.getJobs().get(1).getNumber());
+		Assertions.assertEquals("red", build.getJobs().get(1).getStatus());
+		Assertions.assertEquals("2017-09-12T12:01:02Z", build.getJobs().get(1).getFinishedAt());
+	}
+
+	@Test
+	void getStats() {
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google/builds")).willReturn(aResponse()
+				.withStatus(HttpStatus.SC_OK).withBody(toBuilds(105, 0, "started", null, 104, 1, "passed", 100, 103, 10,
+						"failed", 300))));
+		httpServer.stubFor(get(urlEqualTo("/repos/ligoj/plugin-vm-google/builds?after_number=103"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+						.withBody(toBuilds(102, 40, "passed", 200, 101, 100, "passed", 50))));
+		httpServer.start();
+
+		final var result = resource.getStats(subscription);
+		Assertions.assertEquals(1, result.get("7").builds());
+		Assertions.assertEquals(1d, result.get("7").passRate());
+		Assertions.assertEquals(100, result.get("7").medianDuration());
+		Assertions.assertEquals(60, result.get("7").medianCommitDelay());
+		Assertions.assertEquals(2, result.get("30").builds());
+		Assertions.assertEquals(0.5d, result.get("30").passRate());
+		Assertions.assertEquals(300, result.get("30").p95Duration());
+		Assertions.assertEquals(3, result.get("90").builds());
+		Assertions.assertEquals(200, result.get("90").medianDuration());
+
+		// Served from the store
+		Assertions.assertSame(result, resource.getStats(subscription));
+		httpServer.verify(1, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google/builds")));
+	}
+
+	@Test
+	void getStatsIncremental() {
+		final var key = "node|ligoj/plugin-vm-google";
+		final List<String> requested = new ArrayList<>();
+		final var parserBuilds = new TravisJobParser();
+		ReflectionTestUtils.setField(parserBuilds, "objectMapper", new ObjectMapper());
+		stats.ingest(key, after -> {
+			requested.add(after);
+			return after == null ? parse(parserBuilds, toBuilds(11, 0, "started", null, 10, 1, "passed", 100)) : List.of();
+		});
+		Assertions.assertEquals(Arrays.asList(null, "10"), requested);
+
+		// Only the builds newer than the stored ones, the running build is fetched again
+		requested.clear();
+		final var result = stats.ingest(key, after -> {
+			requested.add(after);
+			return parse(parserBuilds, toBuilds(12, 0, "passed", 120, 11, 0, "failed", 110, 10, 1, "passed", 100));
+		});
+		Assertions.assertEquals(Collections.singletonList(null), requested);
+		Assertions.assertEquals(3, result.get("7").builds());
+		Assertions.assertEquals(2d / 3, result.get("7").passRate());
+	}
+
+	private List<Build> parse(final TravisJobParser parser, final String json) {
+		return parser.parseBuilds(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Return a build listing, each build being given by its identifier, age in days, state and duration. The commit
+	 * of each build is one minute older than its start.
+	 */
+	private String toBuilds(final Object... builds) {
+		final var result = new StringBuilder("{\"builds\":[");
+		final var commits = new StringBuilder("\"commits\":[");
+		for (int i = 0; i < builds.length; i += 4) {
+			final var started = Instant.now().minus((int) builds[i + 1], ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS);
+			final var separator = i == 0 ? "" : ",";
+			result.append(separator).append("{\"id\":").append(builds[i]).append(",\"number\":\"").append(builds[i])
+					.append("\",\"commit_id\":").append(builds[i]).append(",\"state\":\"").append(builds[i + 2])
+					.append("\",\"started_at\":\"").append(started).append("\",\"duration\":").append(builds[i + 3])
+					.append(",\"job_ids\":[]}");
+			commits.append(separator).append("{\"id\":").append(builds[i]).append(",\"committed_at\":\"")
+					.append(started.minusSeconds(60)).append("\"}");
+		}
+		return result.append("],").append(commits).append("]}").toString();
+	}
+
+	@Test
+	void findBuildNotFound() {
+		httpServer.start();
+		Assertions.assertThrows(EntityNotFoundException.class, () -> resource.findBuild(subscription, 1));
+	}
+
+	@Test
+	void getLog() throws Exception {
+		addResource("/jobs/274572862", "mock-server/travis/travis-job.json");
+		httpServer.stubFor(get(urlEqualTo("/jobs/274572862/log")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withHeader("Content-Type", "text/plain").withBody("line1\nline2\n")));
+		httpServer.start();
+		final var output = new ByteArrayOutputStream();
+		resource.getLog(subscription, 274572862, 0).write(output);
+		Assertions.assertEquals("line1\nline2\n", output.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void getLogRange() throws Exception {
+		addResource("/jobs/274572862", "mock-server/travis/travis-job.json");
+		httpServer.stubFor(get(urlEqualTo("/jobs/274572862/log")).withHeader("Range", equalTo("bytes=6-"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_PARTIAL_CONTENT).withBody("line2\n")));
+		httpServer.start();
+		final var output = new ByteArrayOutputStream();
+		resource.getLog(subscription, 274572862, 6).write(output);
+		Assertions.assertEquals("line2\n", output.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void getLogRangeIgnored() throws Exception {
+		addResource("/jobs/274572862", "mock-server/travis/travis-job.json");
+		httpServer.stubFor(get(urlEqualTo("/jobs/274572862/log"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody("line1\nline2\n")));
+		httpServer.start();
+		final var output = new ByteArrayOutputStream();
+		resource.getLog(subscription, 274572862, 6).write(output);
+		Assertions.assertEquals("line2\n", output.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void getLogNoNewBytes() throws Exception {
+		addResource("/jobs/274572862", "mock-server/travis/travis-job.json");
+		httpServer.stubFor(get(urlEqualTo("/jobs/274572862/log"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE)));
+		httpServer.start();
+		final var output = new ByteArrayOutputStream();
+		resource.getLog(subscription, 274572862, 12).write(output);
+		Assertions.assertEquals(0, output.size());
+	}
+
+	@Test
+	void getLogStreamTimeout() throws Exception {
+		configuration.put(TravisCircuitBreaker.CONF_TIMEOUT, "1000");
+		configuration.put(TravisCircuitBreaker.CONF_FAILURES, "1");
+		addResource("/jobs/274572862", "mock-server/travis/travis-job.json");
+		httpServer.stubFor(get(urlEqualTo("/jobs/274572862/log")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withFixedDelay(1500).withBody("line1\nline2\n")));
+		httpServer.start();
+
+		// The log is slower than the request timeout, but within the stream timeout
+		final var output = new ByteArrayOutputStream();
+		resource.getLog(subscription, 274572862, 0).write(output);
+		Assertions.assertEquals("line1\nline2\n", output.toString(StandardCharsets.UTF_8));
+
+		// A failed log does not open the circuit
+		httpServer.stubFor(get(urlEqualTo("/jobs/274572862/log"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_SERVICE_UNAVAILABLE)));
+		Assertions.assertThrows(IOException.class, () -> resource.getLog(subscription, 274572862, 0).write(output));
+		final var key = TravisClientRegistry.toKey(subscriptionResource.getParametersNoCheck(subscription));
+		Assertions.assertEquals(TravisCircuitBreaker.State.CLOSED, breaker.getState(key));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void getLogStreamCap() throws Exception {
+		addResource("/jobs/274572862", "mock-server/travis/travis-job.json");
+		httpServer.stubFor(get(urlEqualTo("/jobs/274572862/log")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withHeader("Content-Type", "text/plain").withBody("line1\nline2\n")));
+		httpServer.start();
+		final var registry = new SimpleMeterRegistry();
+		final var previous = metrics.getRegistry();
+		ReflectionTestUtils.setField(metrics, "registry", registry);
+		try {
+			final var parameters = pvResource.getNodeParameters("service:build:travis:bpr");
+			final var key = TravisClientRegistry.toKey(parameters);
+			final var prefix = key.substring(0, key.length() - 56);
+
+			// A running stream does not hold a permit of the concurrency cap
+			Assertions.assertTrue(clients.stream(parameters, processor -> {
+				final var pool = (Map<String, Object>) clients.getMetrics().get(prefix);
+				return pool.get("active").equals(0) && pool.get("streams").equals(1);
+			}));
+
+			// The copy of the log is not recorded as a parse
+			final var output = new ByteArrayOutputStream();
+			resource.getLog(subscription, 274572862, 0).write(output);
+			Assertions.assertEquals("line1\nline2\n", output.toString(StandardCharsets.UTF_8));
+			Assertions.assertNull(registry.find("travis.parse").tags("operation", "log").timer());
+			Assertions.assertNotNull(registry.find("travis.request").tags("operation", "log").timer());
+		} finally {
+			ReflectionTestUtils.setField(metrics, "registry", previous);
+		}
+	}
+
+	@Test
+	void getLogOtherRepository() {
+		httpServer.stubFor(get(urlEqualTo("/jobs/274572862")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withBody("{\"job\":{\"id\":274572862,\"repository_slug\":\"ligoj/ligoj\"}}")));
+		httpServer.start();
+		Assertions.assertThrows(EntityNotFoundException.class, () -> resource.getLog(subscription, 274572862, 0));
+	}
+
+	private void addResource(final String path, final String file) throws IOException {
+		httpServer.stubFor(get(urlEqualTo(path)).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withBody(IOUtils.toString(new ClassPathResource(file).getInputStream(), StandardCharsets.UTF_8))));
+	}
+
+	@Test
+	void buildInvalidateCache() throws Exception {
+		addJobAccess();
+		httpServer.stubFor(post(urlEqualTo("/builds/274572860/restart")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)));
+		httpServer.start();
+		checkJob(resource.findById("service:build:travis:bpr", "ligoj/plugin-vm-google"), false, "blue");
+		this.resource.build(subscription);
+
+		// The restarted job is fetched again
+		addJobAccessBuilding();
+		checkJob(resource.findById("service:build:travis:bpr", "ligoj/plugin-vm-google"), true, "yellow");
+	}
+
+	@Test
+	void sharedCache() throws Exception {
+		configuration.put(TravisResponseCache.CONF_SHARED_CACHE, TravisDatabaseCache.NAME);
+		addJobAccess();
+		httpServer.start();
+		final Map<String, String> parameters = subscriptionResource.getParameters(subscription);
+		final var node = TravisClientRegistry.toKey(parameters);
+		final var key = cache.toKey(parameters, "/repos/ligoj/plugin-vm-google");
+
+		// A resource fetched by a Ligoj node is served to the other ones
+		checkJob(resource.validateJob(parameters), false, "blue");
+		cache.clear();
+		checkJob(resource.validateJob(parameters), false, "blue");
+		httpServer.verify(1, getRequestedFor(urlEqualTo("/repos/ligoj/plugin-vm-google")));
+
+		// A single Ligoj node fetches a resource at a time
+		Assertions.assertTrue(databaseCache.lease(key, 60_000));
+		Assertions.assertFalse(databaseCache.lease(key, 60_000));
+		databaseCache.release(key);
+		Assertions.assertTrue(databaseCache.lease(key, 60_000));
+		databaseCache.release(key);
+
+		// The invalidations of the other Ligoj nodes are applied
+		databaseCache.poll();
+		databaseCache.invalidate(node, "ligoj/plugin-vm-google");
+		Assertions.assertNull(databaseCache.get(key));
+		Assertions.assertNotNull(cache.get(key));
+		databaseCache.poll();
+		Assertions.assertNull(cache.get(key));
+
+		// The node and the resource are stored as given, whatever their content
+		final var other = new TravisResponseCache.Key("http://host/a|b|hash", "/repos/ligoj/plugin|vm");
+		Assertions.assertTrue(databaseCache.lease(other, 60_000));
+		final var stored = cacheEntryRepository.findAllByNode("http://host/a|b|hash");
+		Assertions.assertEquals(1, stored.size());
+		Assertions.assertEquals("/repos/ligoj/plugin|vm", stored.getFirst().getResource());
+	}
+
+	@Test
+	void buildAsync() throws Exception {
+		addJobAccess();
+		httpServer.stubFor(post(urlEqualTo("/builds/274572860/restart")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)));
+		httpServer.start();
+		final var request = this.resource.buildAsync(subscription);
+		Assertions.assertEquals(subscription, request.getSubscription());
+		Assertions.assertEquals("ligoj/plugin-vm-google", request.getJob());
+
+		// Merged restart
+		Assertions.assertSame(request, this.resource.buildAsync(subscription));
+
+		final var outcome = awaitBuild(request.getId());
+		Assertions.assertEquals(TravisBuildRequest.BuildState.SUCCEEDED, outcome.getState());
+		Assertions.assertTrue(outcome.getFinished() >= outcome.getCreated());
+		httpServer.verify(1, postRequestedFor(urlEqualTo("/builds/274572860/restart")));
+	}
+
+	@Test
+	void buildAsyncConcurrentMerge() throws Exception {
+		final var release = new CountDownLatch(1);
+		final List<Future<TravisBuildRequest>> results = new ArrayList<>();
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < 20; i++) {
+				results.add(executor.submit(() -> buildQueue.submit("node", subscription, "ligoj/plugin-vm-google",
+						() -> release.await(5, TimeUnit.SECONDS), r -> {})));
+			}
+
+			// The merged restarts are complete and registered
+			final var first = results.getFirst().get(5, TimeUnit.SECONDS);
+			for (final var result : results) {
+				final var request = result.get(5, TimeUnit.SECONDS);
+				Assertions.assertSame(first, request);
+				Assertions.assertEquals("ligoj/plugin-vm-google", request.getJob());
+				Assertions.assertSame(request, buildQueue.get(request.getId()));
+			}
+			release.countDown();
+		}
+	}
+
+	@Test
+	void buildAsyncFailed() throws Exception {
+		httpServer.start();
+		final var request = this.resource.buildAsync(subscription);
+		Assertions.assertEquals(TravisBuildRequest.BuildState.FAILED, awaitBuild(request.getId()).getState());
+	}
+
+	@Test
+	void getBuildRequestNotFound() {
+		Assertions.assertThrows(EntityNotFoundException.class, () -> this.resource.getBuildRequest("any"));
+	}
+
+	private TravisBuildRequest awaitBuild(final String id) throws InterruptedException {
+		for (int i = 0; i < 50 && !resource.getBuildRequest(id).isDone(); i++) {
+			Thread.sleep(100);
+		}
+		return resource.getBuildRequest(id);
+	}
+
 	@Test
 	void buildInvalidUrl() {
 		@SuppressWarnings("unchecked") final Map<String, String> map = mock(Map.class);